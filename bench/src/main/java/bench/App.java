@@ -0,0 +1,264 @@
+/*
+App.java
+This class's purpose is to let the benchmarks call the application
+classes. JMH needs benchmarks to be in a named package, and a named
+package cannot refer to classes in the default package, so every target
+is looked up once as a static final MethodHandle (the JIT inlines these
+like direct calls) and wrapped in a plain static method
+ */
+package bench;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodHandle PARSE_CSV = find(
+            "CSVReader", "parseCSV", MethodType.methodType(
+                    type("ST"), String.class),
+            MethodType.methodType(Object.class, String.class));
+    private static final MethodHandle PARSE_SERIES = find(
+            "CSVReader", "parseSeries", MethodType.methodType(
+                    type("PriceSeries"), String.class),
+            MethodType.methodType(Object.class, String.class));
+    private static final MethodHandle REPLICATE = find(
+            "LoaderThroughput", "replicate", MethodType.methodType(
+                    File.class, String.class, int.class),
+            MethodType.methodType(File.class, String.class, int.class));
+    private static final MethodHandle SMA = find(
+            "Indicators", "simpMovingAvgs", MethodType.methodType(
+                    double[].class, int.class, type("PriceSeries")),
+            MethodType.methodType(double[].class, int.class, Object.class));
+    private static final MethodHandle SMA_INTO = find(
+            "Indicators", "simpMovingAvgs", MethodType.methodType(
+                    void.class, int.class, double[].class, int.class,
+                    int.class, double[].class),
+            MethodType.methodType(void.class, int.class, double[].class,
+                                  int.class, int.class, double[].class));
+    private static final MethodHandle EMA = find(
+            "Indicators", "expMovingAverage", MethodType.methodType(
+                    java.util.ArrayList.class, int.class, type("PriceSeries")),
+            MethodType.methodType(Object.class, int.class, Object.class));
+    private static final MethodHandle NEW_IMAGE_CANVAS;
+    private static final MethodHandle SET_SCALES = find(
+            "StockGraph", "setScales", MethodType.methodType(
+                    void.class, type("ChartCanvas"), type("PriceSeries")),
+            MethodType.methodType(void.class, Object.class, Object.class));
+    private static final MethodHandle DRAW_CANDLESTICKS = find(
+            "StockGraph", "drawCandlesticks", MethodType.methodType(
+                    void.class, type("ChartCanvas"), type("PriceSeries")),
+            MethodType.methodType(void.class, Object.class, Object.class));
+    private static final MethodHandle SIZE = virtual(
+            "PriceSeries", "size", MethodType.methodType(int.class),
+            MethodType.methodType(int.class, Object.class));
+    private static final MethodHandle CLOSES = virtual(
+            "PriceSeries", "closes", MethodType.methodType(double[].class),
+            MethodType.methodType(double[].class, Object.class));
+    private static final MethodHandle NEW_BUILDER;
+    private static final MethodHandle BUILDER_ADD = virtual(
+            "PriceSeries$Builder", "add", MethodType.methodType(
+                    void.class, long.class, double.class, double.class,
+                    double.class, double.class, double.class, long.class),
+            MethodType.methodType(void.class, Object.class, long.class,
+                                  double.class, double.class, double.class,
+                                  double.class, double.class, long.class));
+    private static final MethodHandle BUILDER_BUILD = virtual(
+            "PriceSeries$Builder", "build", MethodType.methodType(
+                    type("PriceSeries")),
+            MethodType.methodType(Object.class, Object.class));
+
+    static {
+        try {
+            NEW_BUILDER = LOOKUP.findConstructor(
+                    type("PriceSeries$Builder"),
+                    MethodType.methodType(void.class))
+                                .asType(MethodType.methodType(Object.class));
+            NEW_IMAGE_CANVAS = LOOKUP.findConstructor(
+                    type("ImageCanvas"),
+                    MethodType.methodType(void.class, int.class, int.class))
+                                     .asType(MethodType.methodType(
+                                             Object.class, int.class,
+                                             int.class));
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private App() { }
+
+    // loads an application class by name
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        }
+        catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // finds a static method and adapts it to the given erased type
+    private static MethodHandle find(String owner, String name,
+                                     MethodType type, MethodType erased) {
+        try {
+            return LOOKUP.findStatic(type(owner), name, type).asType(erased);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // finds an instance method and adapts it to the given erased type
+    private static MethodHandle virtual(String owner, String name,
+                                        MethodType type, MethodType erased) {
+        try {
+            return LOOKUP.findVirtual(type(owner), name, type).asType(erased);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new RuntimeException(t);
+    }
+
+    static Object parseCSV(String path) {
+        try {
+            return (Object) PARSE_CSV.invokeExact(path);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object parseSeries(String path) {
+        try {
+            return (Object) PARSE_SERIES.invokeExact(path);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static File replicate(String source, int rows) {
+        try {
+            return (File) REPLICATE.invokeExact(source, rows);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static double[] simpMovingAvgs(int period, Object series) {
+        try {
+            return (double[]) SMA.invokeExact(period, series);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static void simpMovingAvgs(int period, double[] values, int from,
+                               int length, double[] out) {
+        try {
+            SMA_INTO.invokeExact(period, values, from, length, out);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object expMovingAverage(int period, Object series) {
+        try {
+            return (Object) EMA.invokeExact(period, series);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object imageCanvas(int width, int height) {
+        try {
+            return (Object) NEW_IMAGE_CANVAS.invokeExact(width, height);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static void setScales(Object canvas, Object series) {
+        try {
+            SET_SCALES.invokeExact(canvas, series);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static void drawCandlesticks(Object canvas, Object series) {
+        try {
+            DRAW_CANDLESTICKS.invokeExact(canvas, series);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static int size(Object series) {
+        try {
+            return (int) SIZE.invokeExact(series);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static double[] closes(Object series) {
+        try {
+            return (double[]) CLOSES.invokeExact(series);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    // returns a file path for input: a .csv path is used as is, a number
+    // of rows replicates test/TSLA-5YEARS.csv to that many rows
+    static String csvFile(String input) {
+        if (input.endsWith(".csv")) return input;
+        return replicate("test/TSLA-5YEARS.csv", Integer.parseInt(input))
+                .getPath();
+    }
+
+    // returns a series for input: a .csv path is parsed, a number of rows
+    // builds a synthetic random walk of daily bars of that length
+    static Object series(String input) {
+        if (input.endsWith(".csv")) return parseSeries(input);
+        int rows = Integer.parseInt(input);
+        Random random = new Random(126);
+        try {
+            Object builder = (Object) NEW_BUILDER.invokeExact();
+            double close = 100.0;
+            for (int i = 0; i < rows; i++) {
+                double open = close;
+                close = Math.max(1.0, open * (1 + 0.02 * random.nextGaussian()));
+                double high = Math.max(open, close) * (1 + 0.01 * random.nextDouble());
+                double low = Math.min(open, close) * (1 - 0.01 * random.nextDouble());
+                long volume = 1000000 + random.nextInt(1000000);
+                BUILDER_ADD.invokeExact(builder, i * 86400L, open, high, low,
+                                        close, close, volume);
+            }
+            return (Object) BUILDER_BUILD.invokeExact(builder);
+        }
+        catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+IndicatorBenchmark.java
+Measures Indicators.simpMovingAvgs and expMovingAverage on an already
+loaded series for periods 3, 20 and 200, on test/TSLA-5YEARS.csv and on
+synthetic random walks of 1e5 to 1e7 bars. simpMovingAvgsIntoBuffer uses
+the primitive kernel with a reused output buffer and should not allocate
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class IndicatorBenchmark {
+    // a test/*.csv path, or a number of synthetic bars
+    @Param({ "test/TSLA-5YEARS.csv", "100000", "1000000", "10000000" })
+    public String input;
+
+    @Param({ "3", "20", "200" })
+    public int period;
+
+    private Object series;
+    private double[] closes;
+    private int length;
+    private double[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        series = App.series(input);
+        closes = App.closes(series);
+        length = App.size(series);
+        out = new double[length - period + 1];
+    }
+
+    @Benchmark
+    public double[] simpMovingAvgs() {
+        return App.simpMovingAvgs(period, series);
+    }
+
+    @Benchmark
+    public double[] simpMovingAvgsIntoBuffer() {
+        App.simpMovingAvgs(period, closes, 0, length, out);
+        return out;
+    }
+
+    @Benchmark
+    public Object expMovingAverage() {
+        return App.expMovingAverage(period, series);
+    }
+}
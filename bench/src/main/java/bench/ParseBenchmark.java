@@ -0,0 +1,60 @@
+/*
+ParseBenchmark.java
+Compares CSVReader.parseCSV (commons-csv records in a symbol table) with
+CSVReader.parseSeries (streaming primitive columns) on the test files and
+on test/TSLA-5YEARS.csv replicated to larger row counts
+ */
+package bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ParseBenchmark {
+    // a test/*.csv path, or a number of rows to replicate TSLA-5YEARS to;
+    // add -p input=10000000 for the largest size
+    @Param({ "test/TSLA-1YEAR.csv", "test/TSLA-5YEARS.csv", "100000",
+            "1000000" })
+    public String input;
+
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        path = App.csvFile(input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (!path.equals(input)) new File(path).delete();
+    }
+
+    @Benchmark
+    public Object parseCSV() {
+        return App.parseCSV(path);
+    }
+
+    @Benchmark
+    public Object parseSeries() {
+        return App.parseSeries(path);
+    }
+}
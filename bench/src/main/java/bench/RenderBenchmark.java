@@ -0,0 +1,48 @@
+/*
+RenderBenchmark.java
+Measures StockGraph.drawCandlesticks on an offscreen 1200x850 ImageCanvas,
+so it runs headless and without StdDraw's window
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g", "-Djava.awt.headless=true" })
+public class RenderBenchmark {
+    // a test/*.csv path, or a number of synthetic bars
+    @Param({ "test/TSLA-1YEAR.csv", "test/TSLA-5YEARS.csv", "100000" })
+    public String input;
+
+    private Object series;
+    private Object canvas;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        series = App.series(input);
+        canvas = App.imageCanvas(1200, 850);
+        App.setScales(canvas, series);
+    }
+
+    @Benchmark
+    public void drawCandlesticks() {
+        App.drawCandlesticks(canvas, series);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+BatchAnalysis.java
+This class's purpose is to analyze a whole directory of Yahoo Finance .csv
+stock files in one run: every ticker is loaded and its SMAs and EMAs are
+computed in parallel on a fork-join pool, and each ticker's indicators are
+written to its own output file. A summary of rows/sec and tickers/sec is
+printed, and optionally a scaling report at 1, 2, 4 and all threads. A
+ticker that cannot be read is reported and skipped without stopping the
+batch. The input directory is only read, unless --cache is given: then
+each .csv file is loaded through its ColumnFile cache, which writes a
+.series file next to it for faster later runs
+ */
+// importing file and concurrency libraries
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class BatchAnalysis {
+    // returns the .csv files in directory sorted by name
+    public static File[] listCSVFiles(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".csv"));
+        if (files == null) {
+            throw new IllegalArgumentException(directory + " is not a directory");
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    // returns the ticker of a .csv file, its name without ".csv"
+    public static String ticker(File file) {
+        String name = file.getName();
+        return name.substring(0, name.length() - ".csv".length());
+    }
+
+    // loads one ticker (through its cache file if cache is true, writing
+    // it if needed), computes SMAs and EMAs for every period and writes
+    // them to outDir/<ticker>-indicators.csv; returns the number of rows
+    public static int analyze(File file, int[] periods, File outDir,
+                              boolean cache) throws IOException {
+        PriceSeries series = cache ? PriceSeries.load(file.getPath())
+                : CSVReader.parseSeries(file.getPath());
+        int length = series.size();
+        // periods longer than the ticker's history are left out
+        int[] usable = Arrays.stream(periods).filter(p -> p <= length)
+                             .toArray();
+        double[] sma = Indicators.movingAvgs(Indicators.Kind.SMA, usable,
+                                             series);
+        double[] ema = Indicators.movingAvgs(Indicators.Kind.EMA, usable,
+                                             series);
+
+        File out = new File(outDir, ticker(file) + "-indicators.csv");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(out))) {
+            StringBuilder line = new StringBuilder("Date,Close");
+            for (int period : usable) line.append(",SMA").append(period);
+            for (int period : usable) line.append(",EMA").append(period);
+            writer.write(line.toString());
+            writer.newLine();
+            for (int i = 0; i < length; i++) {
+                line.setLength(0);
+                line.append(series.dateString(i)).append(',')
+                    .append(series.close(i));
+                for (int p = 0; p < usable.length; p++) {
+                    appendValue(line, sma[p * length + i]);
+                }
+                for (int p = 0; p < usable.length; p++) {
+                    appendValue(line, ema[p * length + i]);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+        return length;
+    }
+
+    // appends ",value" to line, leaving the field empty for days that do
+    // not have an average yet
+    private static void appendValue(StringBuilder line, double value) {
+        line.append(',');
+        if (!Double.isNaN(value)) line.append(value);
+    }
+
+    // analyzes every file on a fork-join pool with the given number of
+    // threads, loading them through their cache files if cache is true; a
+    // ticker that fails is added to failures as "<ticker>: <cause>" and the
+    // others carry on. Returns the total number of rows processed
+    public static long run(File[] files, int[] periods, File outDir,
+                           int threads, boolean cache, List<String> failures) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+            for (File file : files) {
+                tasks.add(() -> analyze(file, periods, outDir, cache));
+            }
+            long rows = 0;
+            List<Future<Integer>> results = pool.invokeAll(tasks);
+            for (int f = 0; f < files.length; f++) {
+                try {
+                    rows += results.get(f).get();
+                }
+                catch (ExecutionException e) {
+                    failures.add(ticker(files[f]) + ": " + e.getCause());
+                }
+            }
+            return rows;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("batch analysis interrupted", e);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // runs the batch with the given number of threads and prints its
+    // throughput and the tickers that failed
+    private static void report(File[] files, int[] periods, File outDir,
+                               int threads, boolean cache) {
+        List<String> failures = new ArrayList<String>();
+        long start = System.nanoTime();
+        long rows = run(files, periods, outDir, threads, cache, failures);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int tickers = files.length - failures.size();
+        StdOut.printf("%3d threads: %d tickers, %d rows in %.3f s "
+                              + "(%.0f rows/s, %.1f tickers/s), %d failed%n",
+                      threads, tickers, rows, seconds, rows / seconds,
+                      tickers / seconds, failures.size());
+        for (String failure : failures) StdOut.println("  skipped " + failure);
+    }
+
+    // analyzes a directory of .csv files, e.g.
+    // java BatchAnalysis test out 10 20 50 [--threads 8] [--scaling]
+    //                    [--cache]
+    public static void main(String[] args) {
+        File directory = new File(args[0]);
+        File outDir = new File(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean scaling = false;
+        boolean cache = false;
+        // collects periods, leaving out the options
+        ArrayList<String> periodArgs = new ArrayList<String>();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--scaling")) scaling = true;
+            else if (args[i].equals("--cache")) cache = true;
+            else periodArgs.add(args[i]);
+        }
+        int[] periods = StockClient.parsePeriods(
+                periodArgs.toArray(new String[0]), 0);
+
+        File[] files = listCSVFiles(directory);
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IllegalArgumentException("cannot create " + outDir);
+        }
+
+        if (!scaling) {
+            report(files, periods, outDir, threads, cache);
+            return;
+        }
+        // scaling report at 1, 2, 4 and all threads; a first untimed run
+        // warms up the JIT so the 1 thread run is not penalized
+        run(files, periods, outDir, threads, cache, new ArrayList<String>());
+        for (int count = 1; count <= 4 && count < threads; count *= 2) {
+            report(files, periods, outDir, count, cache);
+        }
+        report(files, periods, outDir, threads, cache);
+    }
+}
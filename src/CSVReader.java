@@ -16,9 +16,12 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 public class CSVReader {
@@ -27,6 +30,7 @@ public class CSVReader {
     public static ST<String, double[]> parseCSV(String path) {
         // Citation: the following code is partially copied and adapted from
         // the COS126 staff's provided starter code for parsing .csv files
+        Profiler.Stage stage = Profiler.start("parseCSV", path);
         Reader in;
         CSVParser parser;
         List<CSVRecord> list = null;
@@ -71,9 +75,53 @@ public class CSVReader {
                 }
             }
         }
+        Profiler.end(stage, dataset.size());
         return dataset;
     }
 
+    // size of the byte buffer parseSeries reads the file through
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // reads a csv stock file once and returns all of its rows as a
+    // PriceSeries of parallel primitive columns (date, open, high, low,
+    // close, adj close, volume); the file is streamed through a fixed
+    // buffer in a single forward pass so no rows are held as Strings
+    public static PriceSeries parseSeries(String path) {
+        return parseSeries(path, new PriceSeries.Builder());
+    }
+
+    // reads a csv stock file once, adding every row to builder, and returns
+    // the series builder makes of them; a Resampler builder aggregates the
+    // rows into coarser bars while they are read
+    public static PriceSeries parseSeries(String path,
+                                          PriceSeries.Builder builder) {
+        Profiler.Stage stage = Profiler.start("parse", path);
+        CSVRowParser parser = new CSVRowParser(builder);
+        try (InputStream in = new FileInputStream(path)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                parser.parse(buffer, 0, read);
+            }
+            parser.finish();
+        }
+        catch (IOException e) {
+            // a file that cannot be read (or only partly) must not be
+            // returned, or cached, as a shorter series
+            throw new UncheckedIOException("cannot read " + path, e);
+        }
+
+        if (builder.size() == 0) {
+            // throws exception if no content in .csv file
+            throw new RuntimeException("Parser did not find any contents in "
+                                               + ".csv file. Double-check the "
+                                               + ".csv file path and contents.");
+        }
+        PriceSeries series = builder.build();
+        Profiler.end(stage, series.size());
+        return series;
+    }
+
     // tests methods in CSVReader class
     public static void main(String[] args) {
         // filepath stores .csv file from command line
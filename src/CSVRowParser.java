@@ -0,0 +1,358 @@
+/*
+CSVRowParser.java
+This class's purpose is to turn the raw bytes of a Yahoo Finance .csv
+file (Date,Open,High,Low,Close,Adj Close,Volume) into rows of a
+PriceSeries.RowSink (such as a Builder) in a single forward pass, parsing dates and numbers
+straight from the bytes without creating a String or array per row.
+
+By default a row with too few columns, a date that is not a real date or a
+value that is not a number stops the parse with an exception. Given a
+list of malformed rows, the parser instead adds each bad row (and each of
+Yahoo's "null" rows) to the list with its line number and carries on with
+the next row
+ */
+// importing Arrays, charset and List libraries
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class CSVRowParser {
+    // exact powers of ten that a double can hold, used by the fast path of
+    // parseDouble (mantissa / 10^fractionDigits is then correctly rounded)
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // largest integer mantissa a double holds exactly (2^53)
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    // number of columns a row needs at least (date, open, high, low, close)
+    private static final int MIN_FIELDS = 5;
+
+    // a row that was left out, with the line it is on and why
+    public static final class Malformed {
+        public final long line;
+        public final String reason;
+
+        public Malformed(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + reason;
+        }
+    }
+
+    // receives every complete row
+    private final PriceSeries.RowSink builder;
+    // receives every row left out, or null to stop at the first bad row
+    private final List<Malformed> malformed;
+    // true if labels that are not dates (like the test file's A, B, C...)
+    // are read as the row number, which keeps them in file order
+    private final boolean labels;
+    // bytes of the field currently being read, reused for every field
+    private byte[] field = new byte[64];
+    private int fieldLength = 0;
+    // position of the current field in its row (0 = date)
+    private int fieldIndex = 0;
+    // line of the file currently being read, starting at 1
+    private long lineNumber = 1;
+    // true until the header line has been skipped
+    private boolean header = true;
+    // true when the current row holds Yahoo's "null" placeholder values
+    private boolean nullRow = false;
+    // why the current row cannot be read, null while it can
+    private String problem = null;
+
+    // values of the row currently being read
+    private long date;
+    private final double[] prices = new double[5]; // open .. adj close
+    private long volume;
+
+    // creates a parser that adds each row it reads to the given builder
+    // and throws an exception at the first malformed row; a first column
+    // that is a label rather than a date is read as the row number
+    public CSVRowParser(PriceSeries.RowSink builder) {
+        this(builder, true, null, true);
+    }
+
+    // creates a parser that adds each row it reads to the given builder
+    // and each malformed row to malformed (throwing at the first one if
+    // malformed is null); header is false for bytes that start after the
+    // header line, such as a later chunk of a file. Line numbers count
+    // from 1 at the first byte given to this parser
+    public CSVRowParser(PriceSeries.RowSink builder, boolean header,
+                        List<Malformed> malformed) {
+        this(builder, header, malformed, false);
+    }
+
+    private CSVRowParser(PriceSeries.RowSink builder, boolean header,
+                         List<Malformed> malformed, boolean labels) {
+        this.builder = builder;
+        this.header = header;
+        this.malformed = malformed;
+        this.labels = labels;
+    }
+
+    // returns the number of lines read so far, blank lines included
+    public long lines() {
+        return lineNumber - 1;
+    }
+
+    // parses bytes[from, to) of the file; a row may be split across calls
+    public void parse(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b == ',') {
+                endField();
+            }
+            else if (b == '\n') {
+                // blank lines are only counted, not read as rows
+                if (fieldIndex == 0 && fieldLength == 0) lineNumber++;
+                else {
+                    endField();
+                    endRow();
+                }
+            }
+            else if (b != '\r' && b != '"') {
+                // appends byte to the current field, growing it if needed
+                if (fieldLength == field.length) {
+                    field = Arrays.copyOf(field, 2 * field.length);
+                }
+                field[fieldLength++] = b;
+            }
+        }
+    }
+
+    // finishes the last row when the file does not end with a newline
+    public void finish() {
+        if (fieldLength > 0 || fieldIndex > 0) {
+            endField();
+            endRow();
+        }
+    }
+
+    // stores the value of the field that just ended in the current row
+    private void endField() {
+        if (!header && !nullRow && problem == null) {
+            try {
+                if (fieldIndex == 0) {
+                    date = labels && !looksLikeDate(field, fieldLength)
+                            ? builder.size() : parseDate(field, fieldLength);
+                }
+                else if (fieldIndex <= prices.length) {
+                    double value = parseDouble(field, fieldLength);
+                    if (Double.isNaN(value)) nullRow = true;
+                    else prices[fieldIndex - 1] = value;
+                }
+                else if (fieldIndex == prices.length + 1) {
+                    volume = parseLong(field, fieldLength);
+                }
+            }
+            catch (IllegalArgumentException e) {
+                if (malformed == null) {
+                    throw new IllegalArgumentException("line " + lineNumber
+                                                               + " has a "
+                                                               + e.getMessage());
+                }
+                problem = e.getMessage();
+            }
+        }
+        fieldIndex++;
+        fieldLength = 0;
+    }
+
+    // adds the row that just ended to the builder, skipping the header,
+    // blank lines, Yahoo's "null" rows and (when they are collected)
+    // malformed rows
+    private void endRow() {
+        int fields = fieldIndex;
+        if (header) {
+            header = false;
+        }
+        else if (problem != null) {
+            malformed.add(new Malformed(lineNumber, problem));
+        }
+        else if (nullRow) {
+            if (malformed != null) {
+                malformed.add(new Malformed(lineNumber, "null values"));
+            }
+        }
+        else if (fields < MIN_FIELDS) {
+            if (malformed == null) {
+                throw new IllegalArgumentException("line " + lineNumber
+                                                           + " has only " + fields
+                                                           + " columns");
+            }
+            malformed.add(new Malformed(lineNumber, "only " + fields
+                    + " columns"));
+        }
+        else {
+            // adj close and volume columns are optional
+            if (fields < 6) prices[4] = prices[3];
+            if (fields < 7) volume = 0;
+            builder.add(date, prices[0], prices[1], prices[2], prices[3],
+                        prices[4], volume);
+        }
+        fieldIndex = 0;
+        nullRow = false;
+        problem = null;
+        lineNumber++;
+    }
+
+    // converts yyyy-mm-dd[ hh:mm[:ss]] (a 'T' may separate the time) to
+    // seconds since 1970-01-01 UTC; throws an exception for anything else,
+    // including anything after the time (such as a UTC offset, which
+    // PriceSeries.parseDate rejects too) and dates that do not exist like
+    // 2020-13-45 or 2021-02-29
+    static long parseDate(byte[] s, int length) {
+        if (!looksLikeDate(s, length)) throw malformedDate(s, length);
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1
+                || day > daysInMonth(year, month)) {
+            throw malformedDate(s, length);
+        }
+        long seconds = epochDay(year, month, day) * PriceSeries.SECONDS_PER_DAY;
+        if (length == 10) return seconds;
+
+        // optional time of day for intraday bars, hh:mm or hh:mm:ss and
+        // nothing after it (a UTC offset would be silently dropped)
+        if ((length != 16 && length != 19)
+                || (s[10] != ' ' && s[10] != 'T') || s[13] != ':'
+                || (length == 19 && s[16] != ':')) {
+            throw malformedDate(s, length);
+        }
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = length == 19 ? digits(s, 17, 2) : 0;
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0
+                || second > 59) {
+            throw malformedDate(s, length);
+        }
+        return seconds + 3600L * hour + 60L * minute + second;
+    }
+
+    // returns true if the field has the yyyy-mm-dd shape of a date, valid
+    // or not
+    private static boolean looksLikeDate(byte[] s, int length) {
+        return length >= 10 && s[4] == '-' && s[7] == '-';
+    }
+
+    // returns the exception for a date field that cannot be read
+    private static IllegalArgumentException malformedDate(byte[] s,
+                                                          int length) {
+        return new IllegalArgumentException("malformed date: " + new String(
+                s, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    // returns the number of days of a month in the Gregorian calendar
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // returns the number written by count digit bytes starting at from,
+    // or -1 if any of them is not a digit
+    private static int digits(byte[] s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = s[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            value = 10 * value + d;
+        }
+        return value;
+    }
+
+    // number of days from 1970-01-01 to the given date in the proleptic
+    // Gregorian calendar (same result as LocalDate.toEpochDay)
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5
+                + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+                + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // parses a decimal number from the first length bytes of s; plain
+    // numbers with up to 15-16 digits are computed exactly without any
+    // allocation, anything else falls back to Double.parseDouble. Returns
+    // NaN for Yahoo's "null" placeholder
+    double parseDouble(byte[] s, int length) {
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (s[0] == '-' || s[0] == '+')) {
+            negative = s[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        boolean anyDigit = false;
+        for (; i < length; i++) {
+            int d = s[i] - '0';
+            if (d >= 0 && d <= 9) {
+                mantissa = 10 * mantissa + d;
+                if (mantissa > MAX_EXACT_MANTISSA) return slowParse(s, length);
+                if (point) fractionDigits++;
+                anyDigit = true;
+            }
+            else if (s[i] == '.' && !point) {
+                point = true;
+            }
+            else {
+                // exponents and anything unusual take the slow path
+                return slowParse(s, length);
+            }
+        }
+        if (!anyDigit || fractionDigits >= POWERS_OF_TEN.length) {
+            return slowParse(s, length);
+        }
+        double value = fractionDigits == 0
+                ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    // parses a whole number (the volume column) from the first length
+    // bytes of s, falling back to parseDouble for decimal volumes
+    private long parseLong(byte[] s, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int d = s[i] - '0';
+            if (d < 0 || d > 9 || value > Long.MAX_VALUE / 10) {
+                double decimal = parseDouble(s, length);
+                if (Double.isNaN(decimal)) {
+                    nullRow = true;
+                    return 0;
+                }
+                return (long) decimal;
+            }
+            value = 10 * value + d;
+        }
+        return value;
+    }
+
+    // parses the field with Double.parseDouble; only reached for unusual
+    // values so the String it creates does not matter for speed
+    private double slowParse(byte[] s, int length) {
+        String text = new String(s, 0, length, StandardCharsets.US_ASCII)
+                .trim();
+        if (text.equalsIgnoreCase("null")) return Double.NaN;
+        try {
+            return Double.parseDouble(text);
+        }
+        catch (NumberFormatException e) {
+            // endField adds the line number
+            throw new IllegalArgumentException("malformed value: " + text);
+        }
+    }
+}
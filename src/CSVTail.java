@@ -0,0 +1,131 @@
+/*
+CSVTail.java
+This class's purpose is to follow a .csv stock file that another program
+keeps appending rows to (like tail -f): each read only parses the bytes
+added since the last read, starting at the remembered file offset, and
+adds the new rows to the series read so far. A row is only read once its
+line ends with a newline, so a row the writer is still in the middle of
+is never read half done. A malformed row is left out and kept for the
+caller to report (see takeMalformed) instead of stopping the tail
+ */
+// importing file, nio and collection libraries
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CSVTail {
+    // size of the buffer appended bytes are read through
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // every row read so far, and the parser that adds rows to it (and
+    // holds a partly read line between reads)
+    private PriceSeries.Builder builder;
+    private CSVRowParser parser;
+    // malformed rows left out since the last takeMalformed
+    private final List<CSVRowParser.Malformed> malformed =
+            new ArrayList<CSVRowParser.Malformed>();
+    // number of bytes of the file read so far
+    private long offset;
+    // the series as of the last read
+    private PriceSeries series;
+
+    // creates a tail of the given file; nothing is read until read()
+    public CSVTail(String fileName) {
+        this.path = Paths.get(fileName);
+        reset();
+    }
+
+    // forgets everything read so the next read starts at the first byte
+    private void reset() {
+        builder = new PriceSeries.Builder();
+        parser = new CSVRowParser(builder, true, malformed);
+        offset = 0;
+        series = builder.build();
+    }
+
+    // reads the bytes appended since the last read and returns the number
+    // of rows they completed (0 if the file did not grow). If the file
+    // shrank it was replaced or truncated, so it is read again from the
+    // start and -1 is returned to tell the caller every row may have changed
+    public int read() throws IOException {
+        int before = builder.size();
+        boolean restarted = false;
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                reset();
+                restarted = true;
+            }
+            channel.position(offset);
+            int read;
+            while ((read = channel.read(buffer)) > 0) {
+                parser.parse(buffer.array(), 0, read);
+                offset += read;
+                buffer.clear();
+            }
+        }
+        if (builder.size() == before && !restarted) return 0;
+        // shares the columns with the earlier series, nothing is copied
+        series = builder.build();
+        return restarted ? -1 : builder.size() - before;
+    }
+
+    // returns the malformed rows left out since the last call (with their
+    // line numbers in the file) and forgets them
+    public List<CSVRowParser.Malformed> takeMalformed() {
+        List<CSVRowParser.Malformed> taken =
+                new ArrayList<CSVRowParser.Malformed>(malformed);
+        malformed.clear();
+        return taken;
+    }
+
+    // returns every complete row read so far
+    public PriceSeries series() {
+        return series;
+    }
+
+    // returns the file being followed
+    public Path path() {
+        return path;
+    }
+
+    // tests methods in CSVTail class: a simulated collector appends the
+    // rows of a file to a temporary copy one at a time while the tail
+    // follows it; the rows read must equal the source file, e.g.
+    // java CSVTail TSLA-1YEAR.csv 5
+    public static void main(String[] args) throws Exception {
+        String source = args[0];
+        int intervalMillis = Integer.parseInt(args[1]);
+        Path target = Files.createTempFile("tail", ".csv");
+        PriceSeries expected = CSVReader.parseSeries(source);
+        CollectorSimulator collector = CollectorSimulator.start(
+                source, target.toString(), 10, intervalMillis);
+        CSVTail tail = new CSVTail(target.toString());
+        int reads = 0;
+        while (tail.series().size() < expected.size()) {
+            if (tail.read() != 0) reads++;
+            Thread.sleep(1);
+        }
+        collector.stop();
+
+        PriceSeries series = tail.series();
+        boolean same = series.size() == expected.size();
+        for (int i = 0; same && i < series.size(); i++) {
+            same = series.date(i) == expected.date(i)
+                    && series.close(i) == expected.close(i)
+                    && series.volume(i) == expected.volume(i);
+        }
+        StdOut.println(series.size() + " rows in " + reads
+                               + " reads, tail matches source: " + same);
+        Files.delete(target);
+    }
+}
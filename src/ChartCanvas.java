@@ -0,0 +1,46 @@
+/*
+ChartCanvas.java
+This interface lists the drawing calls StockGraph makes (the same ones it
+used to make on StdDraw), so a chart can be drawn either to the StdDraw
+window (StdDrawCanvas) or to an offscreen image (ImageCanvas) without
+StockGraph knowing which. Coordinates are in user units set by
+setXscale/setYscale, like StdDraw
+ */
+// importing Color library
+
+import java.awt.Color;
+
+public interface ChartCanvas {
+    // returns the width of the canvas in pixels
+    int width();
+
+    // erases everything drawn so far, leaving a white canvas
+    void clear();
+
+    // sets the range of x coordinates shown on the canvas
+    void setXscale(double min, double max);
+
+    // sets the range of y coordinates shown on the canvas
+    void setYscale(double min, double max);
+
+    // sets the pen radius as a fraction of the canvas size, like StdDraw
+    void setPenRadius(double radius);
+
+    // resets the pen radius to its default
+    void setPenRadius();
+
+    // sets the color of the lines and text drawn next
+    void setPenColor(Color color);
+
+    // draws a line from (x0, y0) to (x1, y1)
+    void line(double x0, double y0, double x1, double y1);
+
+    // draws text centered at (x, y)
+    void text(double x, double y, String text);
+
+    // draws text with its left end at (x, y)
+    void textLeft(double x, double y, String text);
+
+    // draws text with its right end at (x, y)
+    void textRight(double x, double y, String text);
+}
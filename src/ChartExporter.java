@@ -0,0 +1,214 @@
+/*
+ChartExporter.java
+This class's purpose is to render stock charts (axes, candlesticks, SMA
+and EMA lines, the same layers StockClient shows) to PNG files without a
+window, so charts can be made on headless servers. Every chart is drawn
+on its own ImageCanvas, so a batch of tickers and periods is rendered in
+parallel without sharing StdDraw's static state. The input directory is
+only read, unless --cache is given: then each .csv file is loaded through
+its ColumnFile cache, which writes a .series file next to it for faster
+later runs
+ */
+// importing file and concurrency libraries
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class ChartExporter {
+    // default image size, the same as StockClient's window
+    public static final int DEFAULT_WIDTH = 1200;
+    public static final int DEFAULT_HEIGHT = 850;
+
+    // draws the chart of series with SMA and EMA lines for every period on
+    // a new offscreen canvas of the given size and returns it
+    public static ImageCanvas render(PriceSeries series, int[] periods,
+                                     int width, int height) {
+        return render(series, periods, new String[0], width, height);
+    }
+
+    // draws the chart of series with SMA and EMA lines for every period and
+    // the named indicator layers (see StockGraph.drawLayers) on a new
+    // offscreen canvas of the given size and returns it
+    public static ImageCanvas render(PriceSeries series, int[] periods,
+                                     String[] layers, int width, int height) {
+        ImageCanvas canvas = new ImageCanvas(width, height);
+        StockGraph.setScales(canvas, series, StockGraph.countPanels(layers));
+        StockGraph.drawCandlesticks(canvas, series);
+        StockGraph.drawMovingAvgs(canvas, Indicators.Kind.SMA, periods, series);
+        StockGraph.drawMovingAvgs(canvas, Indicators.Kind.EMA, periods, series);
+        StockGraph.drawLayers(canvas, layers, series);
+        return canvas;
+    }
+
+    // renders the chart of series and writes it to out as a PNG file
+    public static void export(PriceSeries series, int[] periods, int width,
+                              int height, File out) throws IOException {
+        export(series, periods, new String[0], width, height, out);
+    }
+
+    // renders the chart of series with indicator layers and writes it to
+    // out as a PNG file
+    public static void export(PriceSeries series, int[] periods,
+                              String[] layers, int width, int height,
+                              File out) throws IOException {
+        ImageCanvas canvas = render(series, periods, layers, width, height);
+        try {
+            canvas.savePNG(out);
+        }
+        finally {
+            canvas.dispose();
+        }
+    }
+
+    // returns the output name of a chart, e.g. TSLA-5YEARS-10-20.png
+    private static String chartName(File csv, int[] periods) {
+        StringBuilder name = new StringBuilder(BatchAnalysis.ticker(csv));
+        for (int period : periods) name.append('-').append(period);
+        return name.append(".png").toString();
+    }
+
+    // returns true if every period and every layer's indicator fits in a
+    // series of given length
+    private static boolean fits(int[] periods, String[] layers, int length) {
+        for (int period : periods) {
+            if (period > length) return false;
+        }
+        for (String layer : layers) {
+            if (StockGraph.minRows(layer) > length) return false;
+        }
+        return true;
+    }
+
+    // renders every ticker with every group of periods on a fork-join pool
+    // with the given number of threads; each ticker is loaded once and
+    // shared (read only) by its charts. Returns the number of charts
+    public static int exportAll(File[] files, List<int[]> charts,
+                                File outDir, int width, int height,
+                                int threads) {
+        return exportAll(files, charts, new String[0], outDir, width, height,
+                         threads, false);
+    }
+
+    // renders every ticker with every group of periods and the named
+    // indicator layers, loading the tickers through their cache files if
+    // cache is true; a ticker that cannot be read or a chart that cannot
+    // be drawn is reported and skipped without stopping the others.
+    // Returns the number of charts written
+    public static int exportAll(File[] files, List<int[]> charts,
+                                String[] layers, File outDir, int width,
+                                int height, int threads, boolean cache) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // loads every ticker in parallel first
+            List<Callable<PriceSeries>> loads =
+                    new ArrayList<Callable<PriceSeries>>();
+            for (File file : files) {
+                loads.add(() -> cache ? PriceSeries.load(file.getPath())
+                        : CSVReader.parseSeries(file.getPath()));
+            }
+            List<Future<PriceSeries>> loaded = pool.invokeAll(loads);
+
+            List<Callable<Boolean>> renders = new ArrayList<Callable<Boolean>>();
+            List<File> outs = new ArrayList<File>();
+            for (int f = 0; f < files.length; f++) {
+                File file = files[f];
+                PriceSeries series;
+                try {
+                    series = loaded.get(f).get();
+                }
+                catch (ExecutionException e) {
+                    StdOut.println("skipping " + file + ": "
+                                               + e.getCause());
+                    continue;
+                }
+                for (int[] periods : charts) {
+                    // periods or layers longer than the ticker's history
+                    // are skipped
+                    if (!fits(periods, layers, series.size())) continue;
+                    File out = new File(outDir, chartName(file, periods));
+                    outs.add(out);
+                    renders.add(() -> {
+                        export(series, periods, layers, width, height, out);
+                        return true;
+                    });
+                }
+            }
+            int count = 0;
+            List<Future<Boolean>> rendered = pool.invokeAll(renders);
+            for (int r = 0; r < rendered.size(); r++) {
+                try {
+                    rendered.get(r).get();
+                    count++;
+                }
+                catch (ExecutionException e) {
+                    StdOut.println("chart " + outs.get(r) + " failed: "
+                                               + e.getCause());
+                }
+            }
+            return count;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("chart export interrupted", e);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // exports charts for a .csv file or a directory of .csv files, e.g.
+    // java ChartExporter test charts 20 50 10,20,50 [--size 1200x850]
+    //                    [--threads 8] [--layers bollinger,rsi,macd]
+    //                    [--cache]
+    // each period argument is one chart; comma separated periods are drawn
+    // on the same chart
+    public static void main(String[] args) {
+        // no window is ever opened, so AWT can run without a display
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        File input = new File(args[0]);
+        File outDir = new File(args[1]);
+        int width = DEFAULT_WIDTH;
+        int height = DEFAULT_HEIGHT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] layers = new String[0];
+        boolean cache = false;
+        List<int[]> charts = new ArrayList<int[]>();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--layers")) {
+                layers = args[++i].split(",");
+            }
+            else if (args[i].equals("--cache")) cache = true;
+            else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--size")) {
+                String[] size = args[++i].split("x");
+                width = Integer.parseInt(size[0]);
+                height = Integer.parseInt(size[1]);
+            }
+            else {
+                charts.add(StockClient.parsePeriods(new String[] { args[i] }, 0));
+            }
+        }
+
+        File[] files = input.isDirectory()
+                ? BatchAnalysis.listCSVFiles(input) : new File[] { input };
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IllegalArgumentException("cannot create " + outDir);
+        }
+        long start = System.nanoTime();
+        int count = exportAll(files, charts, layers, outDir, width, height,
+                              threads, cache);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        StdOut.printf("%d charts in %.3f s (%.1f charts/s) on %d threads%n",
+                      count, seconds, count / seconds, threads);
+    }
+}
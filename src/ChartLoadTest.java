@@ -0,0 +1,143 @@
+/*
+ChartLoadTest.java
+This class's purpose is to measure how ChartServer holds up under many
+requests at once: it starts a server on the .csv files of a directory,
+then a number of clients each send requests back to back (indicators,
+charts or a mix of both, for random files and periods) and the p50 and
+p99 latency and the requests per second are reported. The first round
+only warms up the JVM and the server's cache and is not counted
+ */
+// importing HTTP client, collection and concurrency libraries
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ChartLoadTest {
+    // periods asked for, and the layers of every other chart
+    private static final int[] PERIODS = { 10, 20, 50 };
+    private static final String[] LAYERS = { "", "&layers=rsi,macd" };
+
+    // returns the path and query of a random request of the given mix
+    // (indicators, chart or mixed)
+    private static String request(String mix, String[] files, Random random) {
+        String file = files[random.nextInt(files.length)];
+        int period = PERIODS[random.nextInt(PERIODS.length)];
+        boolean chart = mix.equals("chart")
+                || mix.equals("mixed") && random.nextInt(4) == 0;
+        if (chart) {
+            return "/chart?file=" + file + "&period=" + period
+                    + LAYERS[random.nextInt(LAYERS.length)]
+                    + "&width=800&height=600";
+        }
+        String kind = random.nextBoolean() ? "sma" : "ema";
+        String format = random.nextBoolean() ? "&format=binary" : "";
+        return "/indicators?file=" + file + "&kind=" + kind + "&period="
+                + period + format;
+    }
+
+    // sends requests requests per client from clients threads at once and
+    // returns the latency of each in nanoseconds, sorted; fails on any
+    // answer other than 200
+    private static long[] run(HttpClient http, String base, String mix,
+                              String[] files, int clients, int requests)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+            for (int c = 0; c < clients; c++) {
+                Random random = new Random(c);
+                results.add(pool.submit(() -> {
+                    long[] latencies = new long[requests];
+                    for (int r = 0; r < requests; r++) {
+                        HttpRequest get = HttpRequest.newBuilder(URI.create(
+                                base + request(mix, files, random))).build();
+                        long start = System.nanoTime();
+                        HttpResponse<byte[]> response = http.send(
+                                get, HttpResponse.BodyHandlers.ofByteArray());
+                        latencies[r] = System.nanoTime() - start;
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException(
+                                    get.uri() + ": " + response.statusCode()
+                                            + " " + new String(response.body()));
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+            long[] all = new long[clients * requests];
+            for (int c = 0; c < clients; c++) {
+                System.arraycopy(results.get(c).get(), 0, all, c * requests,
+                                 requests);
+            }
+            Arrays.sort(all);
+            return all;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // returns the latency below which fraction of the sorted latencies are,
+    // in milliseconds
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // load tests a server on a directory of .csv files, e.g.
+    // java ChartLoadTest test 16 200 mixed
+    // (16 clients sending 200 requests each; mix is indicators, chart or
+    // mixed, where every fourth request is a chart)
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        String directory = args[0];
+        int clients = Integer.parseInt(args[1]);
+        int requests = Integer.parseInt(args[2]);
+        String mix = args.length > 3 ? args[3] : "mixed";
+        // files too short for the longest period are left out
+        List<String> names = new ArrayList<String>();
+        for (File file : new File(directory).listFiles()) {
+            if (file.getName().endsWith(".csv") && PriceSeries.load(
+                    file.getPath()).size() >= PERIODS[PERIODS.length - 1]) {
+                names.add(file.getName());
+            }
+        }
+        String[] files = names.toArray(new String[0]);
+
+        ChartServer server = new ChartServer(directory, 0,
+                                             new SeriesCache(256L << 20));
+        server.start();
+        HttpClient http = HttpClient.newHttpClient();
+        String base = "http://localhost:" + server.port();
+        try {
+            StdOut.printf("%d files, %d clients, %s requests, %s%n",
+                          files.length, clients, mix,
+                          server.usesVirtualThreads() ? "virtual threads"
+                                  : "thread pool");
+            run(http, base, mix, files, clients, Math.max(1, requests / 4));
+            long start = System.nanoTime();
+            long[] latencies = run(http, base, mix, files, clients, requests);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            StdOut.printf("%d requests in %.2f s: %.0f requests/s%n",
+                          latencies.length, seconds,
+                          latencies.length / seconds);
+            StdOut.printf("p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                          percentile(latencies, 0.50),
+                          percentile(latencies, 0.99),
+                          latencies[latencies.length - 1] / 1e6);
+        }
+        finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ChartServer.java
+This class's purpose is to serve indicators and charts of the .csv files
+in one data directory over HTTP, so other tools can ask for them without
+running StockClient for every request:
+
+  GET /indicators?file=TSLA-5YEARS.csv&kind=sma&period=20[&format=binary]
+      one value per day (NaN, or null in JSON, before the first), as JSON
+      {"file": ..., "kind": ..., "period": ..., "dates": [...],
+      "values": [...]} or as big-endian 8 byte doubles (format=binary or
+      Accept: application/octet-stream); kind is sma, ema, rsi or atr
+  GET /chart?file=TSLA-5YEARS.csv&period=10,20[&layers=rsi,macd]
+             [&width=1200&height=850]
+      a PNG of the chart drawn offscreen (ChartExporter.render)
+
+Every request is handled on its own virtual thread when the JVM has them
+(Java 21 or newer) and on a fixed pool of threads otherwise. Charts are
+drawn on an ImageCanvas per request, never on the shared StdDraw window,
+and series and indicators come from a SeriesCache, so requests run at the
+same time without sharing any mutable state
+ */
+// importing HTTP server, file and concurrency libraries
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ChartServer {
+    // threads used when the JVM has no virtual threads
+    private static final int FALLBACK_THREADS =
+            Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+    // largest chart a request may ask for, so one request cannot take
+    // gigabytes of image
+    private static final int MAX_SIDE = 4000;
+
+    private final Path directory;
+    private final SeriesCache cache;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    // a request that cannot be answered, with the HTTP status to answer
+    private static final class RequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        private RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // creates a server for the .csv files in directory on port (0 picks a
+    // free port) backed by cache; call start to accept requests
+    public ChartServer(String directory, int port, SeriesCache cache)
+            throws IOException {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(this.directory)) {
+            throw new IllegalArgumentException(directory + " is not a "
+                                                       + "directory");
+        }
+        this.cache = cache;
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(
+                FALLBACK_THREADS, runnable -> {
+                    Thread thread = new Thread(runnable, "chart-server");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/indicators", exchange -> handle(exchange, true));
+        server.createContext("/chart", exchange -> handle(exchange, false));
+    }
+
+    // returns an executor starting a virtual thread per task, or null if
+    // this JVM has none (looked up by reflection so the class still
+    // compiles and runs on Java 17)
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    // starts accepting requests
+    public void start() {
+        server.start();
+    }
+
+    // stops accepting requests and waits at most delaySeconds for the
+    // requests being answered
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // returns the port the server listens on
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // returns true if requests run on virtual threads
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // answers one request to /indicators or /chart, turning a bad request
+    // into a plain text error instead of a closed connection
+    private void handle(HttpExchange exchange, boolean indicators)
+            throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new RequestException(405, "only GET is supported");
+            }
+            Map<String, String> query = query(exchange.getRequestURI()
+                                                      .getRawQuery());
+            if (indicators) indicators(exchange, query);
+            else chart(exchange, query);
+        }
+        catch (RequestException e) {
+            error(exchange, e.status, e.getMessage());
+        }
+        catch (IllegalArgumentException e) {
+            // bad numbers, unknown layers, periods longer than the file
+            error(exchange, 400, e.getMessage());
+        }
+        catch (RuntimeException e) {
+            error(exchange, 500, e.toString());
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    // answers /indicators with the values of one indicator of a file
+    private void indicators(HttpExchange exchange, Map<String, String> query)
+            throws IOException {
+        String fileName = file(query);
+        String kind = required(query, "kind");
+        int period = Integer.parseInt(required(query, "period"));
+        if (period < 1) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        PriceSeries series = cache.series(fileName);
+        if (period > series.size()) {
+            throw new IllegalArgumentException("period " + period + " is "
+                                                       + "longer than the "
+                                                       + "file");
+        }
+        double[] values;
+        switch (kind) {
+            case "sma":
+                values = cache.movingAvgs(fileName, Indicators.Kind.SMA,
+                                          period);
+                break;
+            case "ema":
+                values = cache.movingAvgs(fileName, Indicators.Kind.EMA,
+                                          period);
+                break;
+            case "rsi":
+                values = cache.indicator(fileName, "rsi", period,
+                                         s -> Indicators.rsi(period, s));
+                break;
+            case "atr":
+                values = cache.indicator(fileName, "atr", period,
+                                         s -> Indicators.averageTrueRange(
+                                                 period, s));
+                break;
+            default:
+                throw new RequestException(400, "kind must be sma, ema, rsi "
+                                                   + "or atr");
+        }
+
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        boolean binary = "binary".equals(query.get("format"))
+                || accept != null && accept.contains("application/octet-stream");
+        if (binary) {
+            ByteBuffer bytes = ByteBuffer.allocate(8 * values.length);
+            bytes.asDoubleBuffer().put(values);
+            exchange.getResponseHeaders().set("X-Values",
+                                              String.valueOf(values.length));
+            send(exchange, 200, "application/octet-stream", bytes.array());
+            return;
+        }
+        StringBuilder json = new StringBuilder(24 * values.length + 64);
+        json.append("{\"file\": \"").append(escape(query.get("file")))
+            .append("\", \"kind\": \"").append(kind)
+            .append("\", \"period\": ").append(period).append(", \"dates\": [");
+        for (int i = 0; i < series.size(); i++) {
+            if (i > 0) json.append(", ");
+            json.append('"').append(series.dateString(i)).append('"');
+        }
+        json.append("], \"values\": [");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) json.append(", ");
+            // JSON has no NaN
+            if (Double.isNaN(values[i])) json.append("null");
+            else json.append(values[i]);
+        }
+        json.append("]}");
+        send(exchange, 200, "application/json",
+             json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // answers /chart with a PNG of the chart of a file
+    private void chart(HttpExchange exchange, Map<String, String> query)
+            throws IOException {
+        String fileName = file(query);
+        int[] periods = StockClient.parsePeriods(
+                new String[] { required(query, "period") }, 0);
+        String layers = query.get("layers");
+        int width = side(query, "width", ChartExporter.DEFAULT_WIDTH);
+        int height = side(query, "height", ChartExporter.DEFAULT_HEIGHT);
+        PriceSeries series = cache.series(fileName);
+        for (int period : periods) {
+            if (period > series.size()) {
+                throw new IllegalArgumentException("period " + period + " is "
+                                                           + "longer than the "
+                                                           + "file");
+            }
+        }
+
+        ImageCanvas canvas = ChartExporter.render(
+                series, periods,
+                layers == null ? new String[0] : layers.split(","), width,
+                height);
+        ByteArrayOutputStream png = new ByteArrayOutputStream(1 << 16);
+        try {
+            canvas.writePNG(png);
+        }
+        finally {
+            canvas.dispose();
+        }
+        send(exchange, 200, "image/png", png.toByteArray());
+    }
+
+    // returns the path of the file parameter, which must name a file in
+    // the server's directory (never one outside it, such as ../x.csv)
+    private String file(Map<String, String> query) {
+        Path path = directory.resolve(required(query, "file")).normalize();
+        if (!path.startsWith(directory) || !Files.isRegularFile(path)) {
+            throw new RequestException(404, "no file " + query.get("file"));
+        }
+        return path.toString();
+    }
+
+    // returns a width or height parameter, or its default
+    private static int side(Map<String, String> query, String name,
+                            int otherwise) {
+        String value = query.get(name);
+        if (value == null) return otherwise;
+        int side = Integer.parseInt(value);
+        if (side < 100 || side > MAX_SIDE) {
+            throw new IllegalArgumentException(name + " must be from 100 to "
+                                                       + MAX_SIDE);
+        }
+        return side;
+    }
+
+    // returns a parameter that must be given
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new RequestException(400, "missing parameter " + name);
+        }
+        return value;
+    }
+
+    // splits a raw query string such as file=a.csv&period=20 into its
+    // decoded parameters
+    private static Map<String, String> query(String raw) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (raw == null) return parameters;
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0) continue;
+            parameters.put(decode(pair.substring(0, equals)),
+                           decode(pair.substring(equals + 1)));
+        }
+        return parameters;
+    }
+
+    // decodes one %-encoded query component
+    private static String decode(String text) {
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // escapes backslashes and quotes for JSON
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // sends a whole response body
+    private static void send(HttpExchange exchange, int status, String type,
+                             byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // sends a plain text error
+    private static void error(HttpExchange exchange, int status,
+                              String message) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8",
+             (message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    // serves the .csv files of a directory until the process is killed,
+    // e.g. java ChartServer test 8080, then
+    // curl 'localhost:8080/indicators?file=TSLA-5YEARS.csv&kind=sma&period=20'
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        ChartServer server = new ChartServer(args[0], port,
+                                             SeriesCache.shared());
+        server.start();
+        StdOut.println("serving " + server.directory + " on port "
+                               + server.port() + (server.usesVirtualThreads()
+                ? " (virtual threads)" : " (" + FALLBACK_THREADS + " threads)"));
+    }
+}
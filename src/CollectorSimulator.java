@@ -0,0 +1,98 @@
+/*
+CollectorSimulator.java
+This class's purpose is to stand in for the collector that appends rows
+to a ticker's .csv file during the trading day, so StockClient --follow
+and CSVTail can be tried locally: it copies the header and first rows of
+a source file to a target file, then appends the remaining rows one at a
+time on a timer
+ */
+// importing file and concurrency libraries
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class CollectorSimulator {
+    private final ScheduledExecutorService timer;
+    private final List<String> lines;
+    private final Path target;
+    // next line of the source file to append
+    private int next;
+
+    private CollectorSimulator(List<String> lines, Path target, int next) {
+        this.lines = lines;
+        this.target = target;
+        this.next = next;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // writes the header and first rows rows of source to target, then
+    // appends one more row every intervalMillis milliseconds until source
+    // runs out or stop is called
+    public static CollectorSimulator start(String source, String target,
+                                           int rows, long intervalMillis)
+            throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(source),
+                                                StandardCharsets.UTF_8);
+        int first = Math.min(rows + 1, lines.size());
+        StringBuilder start = new StringBuilder();
+        for (int i = 0; i < first; i++) start.append(lines.get(i)).append('\n');
+        Path path = Paths.get(target);
+        Files.write(path, start.toString().getBytes(StandardCharsets.UTF_8));
+
+        CollectorSimulator collector = new CollectorSimulator(lines, path,
+                                                              first);
+        collector.timer.scheduleAtFixedRate(collector::append, intervalMillis,
+                                            intervalMillis,
+                                            TimeUnit.MILLISECONDS);
+        return collector;
+    }
+
+    // appends the next row (a whole line in one write, like a collector
+    // would) and stops once every row is written
+    private void append() {
+        if (next >= lines.size()) {
+            timer.shutdown();
+            return;
+        }
+        String line = lines.get(next++) + "\n";
+        try {
+            Files.write(target, line.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            timer.shutdown();
+        }
+    }
+
+    // stops appending rows
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    // appends the rows of a file to a copy on a timer, e.g. run
+    // java CollectorSimulator TSLA-1YEAR.csv live.csv 50 500
+    // and then java StockClient live.csv 10 --follow in another terminal
+    public static void main(String[] args) throws Exception {
+        String source = args[0];
+        String target = args[1];
+        int rows = Integer.parseInt(args[2]);
+        long intervalMillis = Long.parseLong(args[3]);
+        CollectorSimulator collector = start(source, target, rows,
+                                             intervalMillis);
+        collector.timer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        StdOut.println("appended every row of " + source + " to " + target);
+    }
+}
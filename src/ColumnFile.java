@@ -0,0 +1,327 @@
+/*
+ColumnFile.java
+This class's purpose is to save a parsed PriceSeries next to its .csv file
+in a compact binary column format and to read it back on later runs with
+FileChannel.map, so the text file only has to be parsed the first time.
+The cache remembers the size and last modified time of the .csv file and
+is thrown away automatically once the .csv file changes.
+
+File layout (little endian):
+    header (40 bytes): magic "PSER", version, rows, unused,
+                       csv size, csv last modified millis, CRC32 of columns
+    columns:           dates (long), open, high, low, close, adj close
+                       (double), volume (long); rows values each
+ */
+// importing file and nio libraries
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class ColumnFile {
+    // file name extension added to the .csv file name for its cache
+    public static final String EXTENSION = ".series";
+    // "PSER" as an int, marks a file as a series cache
+    private static final int MAGIC = 0x52455350;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    // number of columns and bytes per value in each column
+    private static final int COLUMNS = 7;
+    private static final int VALUE_BYTES = 8;
+    // size of the buffer columns are written through
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    // caching can be turned off with -Dseries.cache=false
+    private static final boolean ENABLED =
+            !"false".equals(System.getProperty("series.cache"));
+
+    // given a file name of .csv stock data, returns its series from the
+    // cache file when that is still valid, otherwise parses the .csv file
+    // and writes a new cache file for next time
+    public static PriceSeries load(String fileName) {
+        Profiler.Stage stage = Profiler.start("load", fileName);
+        PriceSeries series = loadSeries(fileName);
+        Profiler.end(stage, series.size());
+        return series;
+    }
+
+    // loads the series of fileName from its cache or by parsing it
+    private static PriceSeries loadSeries(String fileName) {
+        if (!ENABLED) return CSVReader.parseSeries(fileName);
+        Path csv = Paths.get(fileName);
+        Path cache = cachePath(csv);
+        try {
+            Profiler.Stage stage = Profiler.start("read cache", fileName);
+            PriceSeries series = read(cache, csv);
+            Profiler.end(stage, series == null ? 0 : series.size());
+            if (series != null) return series;
+        }
+        catch (IOException e) {
+            // unreadable or damaged cache, parse the .csv file instead
+        }
+        // the .csv file is stat'ed before it is parsed, so rows appended
+        // while parsing leave the cache out of date rather than stamped
+        // as current
+        long csvSize;
+        long csvModified;
+        try {
+            csvSize = Files.size(csv);
+            csvModified = Files.getLastModifiedTime(csv).toMillis();
+        }
+        catch (IOException e) {
+            return CSVReader.parseSeries(fileName);
+        }
+        PriceSeries series = CSVReader.parseSeries(fileName);
+        try {
+            write(series, csvSize, csvModified, cache);
+        }
+        catch (IOException e) {
+            // the cache is only an optimization (the directory may be
+            // read only), so the parsed series is still returned
+        }
+        return series;
+    }
+
+    // returns the path of the cache file that belongs to a .csv file
+    public static Path cachePath(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + EXTENSION);
+    }
+
+    // writes series to cache, recording the size and modified time its
+    // .csv file had before it was parsed; the file is written under a
+    // temporary name and then moved into place so other threads or
+    // processes never see half a cache file
+    public static void write(PriceSeries series, long csvSize,
+                             long csvModified, Path cache) throws IOException {
+        int rows = series.size();
+        // a date range view is written as a series of its own rows
+        int from = series.offset();
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(),
+                                         cache.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(
+                    temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES)
+                                              .order(ByteOrder.LITTLE_ENDIAN);
+                CRC32 checksum = new CRC32();
+                channel.position(HEADER_BYTES);
+                writeColumn(channel, buffer, checksum, series.dates(),
+                            from, rows);
+                writeColumn(channel, buffer, checksum, series.opens(),
+                            from, rows);
+                writeColumn(channel, buffer, checksum, series.highs(),
+                            from, rows);
+                writeColumn(channel, buffer, checksum, series.lows(),
+                            from, rows);
+                writeColumn(channel, buffer, checksum, series.closes(),
+                            from, rows);
+                writeColumn(channel, buffer, checksum, series.adjCloses(),
+                            from, rows);
+                writeColumn(channel, buffer, checksum, series.volumes(),
+                            from, rows);
+
+                // header goes in last, once the checksum is known
+                buffer.clear();
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(0)
+                      .putLong(csvSize).putLong(csvModified)
+                      .putLong(checksum.getValue());
+                buffer.flip();
+                channel.position(0);
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            // only left behind if writing or moving failed
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // writes rows values of a long column, starting at from, through buffer
+    private static void writeColumn(FileChannel channel, ByteBuffer buffer,
+                                    CRC32 checksum, long[] column, int from,
+                                    int rows) throws IOException {
+        for (int i = from; i < from + rows; ) {
+            buffer.clear();
+            int count = Math.min(from + rows - i,
+                                 buffer.capacity() / VALUE_BYTES);
+            buffer.asLongBuffer().put(column, i, count);
+            buffer.limit(count * VALUE_BYTES);
+            flush(channel, buffer, checksum);
+            i += count;
+        }
+    }
+
+    // writes rows values of a double column, starting at from, through buffer
+    private static void writeColumn(FileChannel channel, ByteBuffer buffer,
+                                    CRC32 checksum, double[] column, int from,
+                                    int rows) throws IOException {
+        for (int i = from; i < from + rows; ) {
+            buffer.clear();
+            int count = Math.min(from + rows - i,
+                                 buffer.capacity() / VALUE_BYTES);
+            buffer.asDoubleBuffer().put(column, i, count);
+            buffer.limit(count * VALUE_BYTES);
+            flush(channel, buffer, checksum);
+            i += count;
+        }
+    }
+
+    // adds the buffer's bytes to the checksum and writes them to channel
+    private static void flush(FileChannel channel, ByteBuffer buffer,
+                              CRC32 checksum) throws IOException {
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    // reads the header of the cache file open on channel and returns its
+    // buffer positioned at the checksum, or null if the cache belongs to
+    // another version of csv; throws an exception if it is truncated
+    private static ByteBuffer header(FileChannel channel, Path cache,
+                                     Path csv) throws IOException {
+        if (channel.size() < HEADER_BYTES) return null;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                        HEADER_BYTES)
+                                   .order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return null;
+        }
+        int rows = header.getInt(8);
+        long csvSize = header.getLong(16);
+        long csvModified = header.getLong(24);
+        // cache belongs to an older version of the .csv file
+        if (csvSize != Files.size(csv) || csvModified
+                != Files.getLastModifiedTime(csv).toMillis()) {
+            return null;
+        }
+        if (channel.size() != HEADER_BYTES + COLUMNS * (long) rows
+                * VALUE_BYTES) {
+            throw new IOException("cache file " + cache + " is truncated");
+        }
+        return header.position(32);
+    }
+
+    // returns the series in cache, or null if there is no cache file or it
+    // does not belong to the current version of csv; throws an exception
+    // if the cache file is damaged
+    public static PriceSeries read(Path cache, Path csv) throws IOException {
+        if (!Files.isRegularFile(cache)) return null;
+        try (FileChannel channel = FileChannel.open(
+                cache, StandardOpenOption.READ)) {
+            ByteBuffer header = header(channel, cache, csv);
+            if (header == null) return null;
+            int rows = header.getInt(8);
+            long expected = header.getLong();
+            long columnBytes = (long) rows * VALUE_BYTES;
+
+            // maps each column and copies it into a primitive array with a
+            // single bulk get
+            CRC32 checksum = new CRC32();
+            long position = HEADER_BYTES;
+            long[] dates = new long[rows];
+            map(channel, position, columnBytes, checksum).asLongBuffer()
+                    .get(dates);
+            double[][] prices = new double[5][rows];
+            for (double[] column : prices) {
+                position += columnBytes;
+                map(channel, position, columnBytes, checksum).asDoubleBuffer()
+                        .get(column);
+            }
+            position += columnBytes;
+            long[] volume = new long[rows];
+            map(channel, position, columnBytes, checksum).asLongBuffer()
+                    .get(volume);
+            if (checksum.getValue() != expected) {
+                throw new IOException("cache file " + cache
+                                              + " failed its checksum");
+            }
+            return PriceSeries.fromColumns(dates, prices[0], prices[1],
+                                           prices[2], prices[3], prices[4],
+                                           volume, rows);
+        }
+    }
+
+    // returns the series of a .csv file mapped straight from its cache
+    // file, written first if it is missing or out of date. The columns stay
+    // in the page cache, outside the Java heap; the checksum is not
+    // checked, since that would read every page of the file up front
+    public static MappedSeries map(String fileName) throws IOException {
+        Path csv = Paths.get(fileName);
+        Path cache = cachePath(csv);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (Files.isRegularFile(cache)) {
+                try (FileChannel channel = FileChannel.open(
+                        cache, StandardOpenOption.READ)) {
+                    ByteBuffer header = header(channel, cache, csv);
+                    if (header != null) {
+                        int rows = header.getInt(8);
+                        long bytes = COLUMNS * (long) rows * VALUE_BYTES;
+                        if (bytes > Integer.MAX_VALUE) {
+                            throw new IOException(fileName + " has too many "
+                                                          + "rows to map");
+                        }
+                        // one mapping for every column; the mapping stays
+                        // valid once the channel is closed
+                        ByteBuffer columns = channel.map(
+                                FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                                bytes);
+                        return new MappedSeries(fileName, columns, rows);
+                    }
+                }
+            }
+            // parses the .csv file once and writes its cache, stamped with
+            // the size and time the file had before parsing started
+            long csvSize = Files.size(csv);
+            long csvModified = Files.getLastModifiedTime(csv).toMillis();
+            write(CSVReader.parseSeries(fileName), csvSize, csvModified, cache);
+        }
+        throw new IOException("cannot write a cache file for " + fileName);
+    }
+
+    // maps length bytes of channel at position and adds them to checksum
+    private static ByteBuffer map(FileChannel channel, long position,
+                                  long length, CRC32 checksum)
+            throws IOException {
+        MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY,
+                                              position, length);
+        checksum.update(column.duplicate());
+        return column.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // tests methods in ColumnFile class: loads a file twice (the second
+    // time from the cache) and checks both loads hold the same rows
+    public static void main(String[] args) {
+        String fileName = args[0];
+        long start = System.nanoTime();
+        PriceSeries first = load(fileName);
+        long firstTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        PriceSeries second = load(fileName);
+        long secondTime = System.nanoTime() - start;
+        PriceSeries parsed = CSVReader.parseSeries(fileName);
+
+        boolean same = first.size() == parsed.size()
+                && second.size() == parsed.size();
+        for (int i = 0; same && i < parsed.size(); i++) {
+            same = first.date(i) == parsed.date(i)
+                    && second.date(i) == parsed.date(i)
+                    && second.open(i) == parsed.open(i)
+                    && second.high(i) == parsed.high(i)
+                    && second.low(i) == parsed.low(i)
+                    && second.close(i) == parsed.close(i)
+                    && second.adjClose(i) == parsed.adjClose(i)
+                    && second.volume(i) == parsed.volume(i);
+        }
+        StdOut.println("rows: " + parsed.size() + ", cache matches csv: " + same);
+        StdOut.printf("first load: %.3f ms, second load: %.3f ms%n",
+                      firstTime / 1e6, secondTime / 1e6);
+    }
+}
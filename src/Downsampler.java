@@ -0,0 +1,111 @@
+/*
+Downsampler.java
+This class's purpose is to shrink a long stock series to about one
+candlestick or a couple of line points per pixel column before it is
+drawn, so drawing takes the same time no matter how many rows the .csv
+file has. Candlesticks are merged into OHLC buckets (first open, highest
+high, lowest low, last close) by OhlcPyramid, and moving average lines
+keep the lowest and highest point of each bucket so no spike disappears
+ */
+public class Downsampler {
+    // candlesticks merged into buckets; x is the position the bucket is
+    // drawn at, in the same units as StockGraph (row i is at x = i + 1)
+    public static class Buckets {
+        public final double[] x;
+        public final double[] open;
+        public final double[] high;
+        public final double[] low;
+        public final double[] close;
+        public final int count;
+
+        Buckets(int count) {
+            this.x = new double[count];
+            this.open = new double[count];
+            this.high = new double[count];
+            this.low = new double[count];
+            this.close = new double[count];
+            this.count = count;
+        }
+    }
+
+    // reduces the line through values[from, from + length), where value k
+    // is at x = firstX + k, to the lowest and highest point of each of
+    // buckets buckets (in the order they occur); writes the points to xs
+    // and ys (each needs 2 * buckets entries) and returns how many
+    public static int minMax(double[] values, int from, int length,
+                             double firstX, int buckets, double[] xs,
+                             double[] ys) {
+        int count = Math.min(buckets, length);
+        int points = 0;
+        for (int b = 0; b < count; b++) {
+            int start = (int) ((long) b * length / count);
+            int end = (int) ((long) (b + 1) * length / count);
+            int lowest = start;
+            int highest = start;
+            for (int k = start + 1; k < end; k++) {
+                double value = values[from + k];
+                if (value < values[from + lowest]) lowest = k;
+                if (value > values[from + highest]) highest = k;
+            }
+            // keeps the two points in the order they appear on the x axis
+            int first = Math.min(lowest, highest);
+            int second = Math.max(lowest, highest);
+            xs[points] = firstX + first;
+            ys[points++] = values[from + first];
+            if (second != first) {
+                xs[points] = firstX + second;
+                ys[points++] = values[from + second];
+            }
+        }
+        return points;
+    }
+
+    // tests methods in Downsampler class: the buckets a file is drawn with
+    // (see OhlcPyramid.bars) must keep its highest high, lowest low, first
+    // open and last close, and its closing line must keep its extremes
+    public static void main(String[] args) {
+        PriceSeries series = PriceSeries.load(args[0]);
+        int buckets = Integer.parseInt(args[1]);
+        int size = series.size();
+        Buckets result = OhlcPyramid.bars(series, 0, size, buckets);
+
+        double highest = Double.NEGATIVE_INFINITY;
+        double lowest = Double.POSITIVE_INFINITY;
+        double bucketHighest = Double.NEGATIVE_INFINITY;
+        double bucketLowest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            highest = Math.max(highest, series.high(i));
+            lowest = Math.min(lowest, series.low(i));
+        }
+        for (int b = 0; b < result.count; b++) {
+            bucketHighest = Math.max(bucketHighest, result.high[b]);
+            bucketLowest = Math.min(bucketLowest, result.low[b]);
+        }
+        StdOut.println(size + " rows in " + result.count + " buckets");
+        StdOut.println("highest kept: " + (highest == bucketHighest)
+                               + ", lowest kept: " + (lowest == bucketLowest));
+        StdOut.println("first open kept: "
+                               + (result.open[0] == series.open(0))
+                               + ", last close kept: "
+                               + (result.close[result.count - 1]
+                == series.close(size - 1)));
+
+        double[] closes = new double[size];
+        for (int i = 0; i < size; i++) closes[i] = series.close(i);
+        double[] xs = new double[2 * buckets];
+        double[] ys = new double[2 * buckets];
+        int points = minMax(closes, 0, size, 1, buckets, xs, ys);
+        double highestClose = Double.NEGATIVE_INFINITY;
+        double lowestClose = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < points; k++) {
+            highestClose = Math.max(highestClose, ys[k]);
+            lowestClose = Math.min(lowestClose, ys[k]);
+        }
+        boolean closesKept = true;
+        for (double close : closes) {
+            closesKept &= close <= highestClose && close >= lowestClose;
+        }
+        StdOut.println(points + " line points, close extremes kept: "
+                               + closesKept);
+    }
+}
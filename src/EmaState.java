@@ -0,0 +1,109 @@
+/*
+EmaState.java
+This class's purpose is to keep the exponential moving average of a stock
+up to date one closing price at a time, so a live feed that appends a
+new bar does not have to recompute the whole history. Like
+Indicators.expMovingAverage, the first EMA is the SMA of the first period
+closing prices. Each update is O(1) and does not allocate
+ */
+// importing ArrayList library
+
+import java.util.ArrayList;
+
+public class EmaState {
+    // time period (number of closing prices) of the moving average
+    private final int period;
+    // weight given to the newest closing price
+    private final double smoothing;
+    // number of closing prices added so far
+    private long count = 0;
+    // sum of the first period closing prices, used for the first EMA
+    private double firstTotal = 0.0;
+    // current EMA and the EMA before the most recent closing price
+    private double current = Double.NaN;
+    private double previous = Double.NaN;
+
+    // creates an empty state for an exponential moving average of given
+    // period
+    public EmaState(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("time period must be positive");
+        }
+        this.period = period;
+        this.smoothing = 2.0 / (period + 1);
+    }
+
+    // adds the next closing price and updates the moving average
+    public void add(double close) {
+        previous = current;
+        count++;
+        if (count < period) {
+            firstTotal += close;
+        }
+        else if (count == period) {
+            // first EMA is the SMA of the first time period
+            firstTotal += close;
+            current = firstTotal / period;
+        }
+        else {
+            current = (close - current) * smoothing + current;
+        }
+    }
+
+    // adds values[from, from + length) one by one
+    public void seed(double[] values, int from, int length) {
+        for (int i = from; i < from + length; i++) add(values[i]);
+    }
+
+    // adds every closing price of an already loaded series
+    public void seed(PriceSeries series) {
+        seed(series.closes(), series.offset(), series.size());
+    }
+
+    // returns true once period closing prices have been added
+    public boolean isReady() {
+        return count >= period;
+    }
+
+    // returns the current exponential moving average, NaN until isReady()
+    public double value() {
+        return current;
+    }
+
+    // returns the exponential moving average before the last add, NaN if
+    // there was none
+    public double previousValue() {
+        return previous;
+    }
+
+    // returns the number of closing prices added so far
+    public long count() {
+        return count;
+    }
+
+    // returns the time period of the moving average
+    public int period() {
+        return period;
+    }
+
+    // tests methods in EmaState class by adding a file's closing prices
+    // one at a time and comparing with Indicators.expMovingAverage
+    public static void main(String[] args) {
+        PriceSeries series = PriceSeries.load(args[0]);
+        int period = Integer.parseInt(args[1]);
+        ArrayList<Double> expMovingAvgs =
+                Indicators.expMovingAverage(period, series);
+
+        EmaState state = new EmaState(period);
+        double maxError = 0.0;
+        for (int i = 0; i < series.size(); i++) {
+            state.add(series.close(i));
+            if (state.isReady()) {
+                double expected = expMovingAvgs.get(i - period + 1);
+                maxError = Math.max(maxError,
+                                    Math.abs(state.value() - expected));
+            }
+        }
+        StdOut.println("Max difference from expMovingAverage: " + maxError);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ImageCanvas.java
+This class's purpose is to draw a chart into an offscreen BufferedImage
+instead of the StdDraw window, so charts can be made on servers without a
+display (java.awt.headless=true). It follows StdDraw's conventions for
+scales, pen radius and text placement so a chart looks the same as on
+screen. Each instance has its own image and state, so many charts can be
+drawn at the same time on different threads
+ */
+// importing image and drawing libraries
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.imageio.ImageIO;
+
+public class ImageCanvas implements ChartCanvas {
+    // StdDraw's default pen radius, and the size pen radii are relative to
+    private static final double DEFAULT_PEN_RADIUS = 0.002;
+    private static final int DEFAULT_SIZE = 512;
+    // StdDraw's default font
+    private static final Font DEFAULT_FONT = new Font("SansSerif", Font.PLAIN, 16);
+
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+    private final int width;
+    private final int height;
+    // range of user coordinates shown, StdDraw's defaults until changed
+    private double xmin = 0.0;
+    private double xmax = 1.0;
+    private double ymin = 0.0;
+    private double ymax = 1.0;
+    // reused so drawing a line does not allocate
+    private final Line2D.Double segment = new Line2D.Double();
+
+    // creates a white canvas of the given size in pixels
+    public ImageCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                  RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setFont(DEFAULT_FONT);
+        graphics.setColor(Color.BLACK);
+        setPenRadius();
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public void clear() {
+        Color pen = graphics.getColor();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(pen);
+    }
+
+    // returns the height of the canvas in pixels
+    public int height() {
+        return height;
+    }
+
+    // returns the image drawn so far
+    public BufferedImage image() {
+        return image;
+    }
+
+    public void setXscale(double min, double max) {
+        xmin = min;
+        xmax = max;
+    }
+
+    public void setYscale(double min, double max) {
+        ymin = min;
+        ymax = max;
+    }
+
+    public void setPenRadius(double radius) {
+        float scaled = (float) (radius * DEFAULT_SIZE);
+        graphics.setStroke(new BasicStroke(scaled, BasicStroke.CAP_ROUND,
+                                           BasicStroke.JOIN_ROUND));
+    }
+
+    public void setPenRadius() {
+        setPenRadius(DEFAULT_PEN_RADIUS);
+    }
+
+    public void setPenColor(Color color) {
+        graphics.setColor(color);
+    }
+
+    // converts user x and y coordinates to pixels
+    private double scaleX(double x) {
+        return width * (x - xmin) / (xmax - xmin);
+    }
+
+    private double scaleY(double y) {
+        return height * (ymax - y) / (ymax - ymin);
+    }
+
+    public void line(double x0, double y0, double x1, double y1) {
+        segment.setLine(scaleX(x0), scaleY(y0), scaleX(x1), scaleY(y1));
+        graphics.draw(segment);
+    }
+
+    public void text(double x, double y, String text) {
+        FontMetrics metrics = graphics.getFontMetrics();
+        double xs = scaleX(x) - metrics.stringWidth(text) / 2.0;
+        graphics.drawString(text, (float) xs,
+                            (float) (scaleY(y) + metrics.getDescent()));
+    }
+
+    public void textLeft(double x, double y, String text) {
+        FontMetrics metrics = graphics.getFontMetrics();
+        graphics.drawString(text, (float) scaleX(x),
+                            (float) (scaleY(y) + metrics.getDescent()));
+    }
+
+    public void textRight(double x, double y, String text) {
+        FontMetrics metrics = graphics.getFontMetrics();
+        double xs = scaleX(x) - metrics.stringWidth(text);
+        graphics.drawString(text, (float) xs,
+                            (float) (scaleY(y) + metrics.getDescent()));
+    }
+
+    // writes the image to file in PNG format
+    public void savePNG(File file) throws IOException {
+        ImageIO.write(image, "png", file);
+    }
+
+    // writes the image to out in PNG format
+    public void writePNG(OutputStream out) throws IOException {
+        ImageIO.write(image, "png", out);
+    }
+
+    // releases the drawing resources once the image is finished
+    public void dispose() {
+        graphics.dispose();
+    }
+}
@@ -2,22 +2,33 @@
 Indicators.java
 This class is used to build financial indicators such as simple
 moving average and exponential moving average that are used to show
-the trend lines of stock data.
+the trend lines of stock data, and Bollinger Bands, RSI, MACD, ATR and
+VWAP over the price and volume columns.
  */
-// importing ArrayList library
+// importing ArrayList and nio libraries
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 
 public class Indicators {
+    // kinds of moving average that movingAvgs can compute in one batch
+    public enum Kind { SMA, EMA }
+
     // returns an ArrayList of the closing prices for the stock given
-    // a fileName that is parsed to create a dataset for the stock
+    // a fileName that is parsed (once per process, see SeriesCache) to
+    // create a dataset for the stock
     private static ArrayList<Double> extractClosing(String fileName) {
-        ST<String, double[]> dataset = CSVReader.parseCSV(fileName);
+        return extractClosing(SeriesCache.shared().series(fileName));
+    }
+
+    // returns an ArrayList of the closing prices for the stock given an
+    // already loaded series
+    private static ArrayList<Double> extractClosing(PriceSeries series) {
         ArrayList<Double> closingPrices = new ArrayList<Double>();
-        // iterates through ST and adds the closing price for each day
+        // iterates through series and adds the closing price for each day
         // in stock data to ArrayList
-        for (String date : dataset.keys()) {
-            closingPrices.add(dataset.get(date)[3]);
+        for (int i = 0; i < series.size(); i++) {
+            closingPrices.add(series.close(i));
         }
         return closingPrices;
     }
@@ -35,41 +46,109 @@ public class Indicators {
 
     // computes the average closing price for given fileName per each specified
     // time interval (days) in range of daily closing prices; returns arr
-    // of SMAs
+    // of SMAs; repeated calls for an unchanged file are answered from the
+    // shared SeriesCache
     public static double[] simpMovingAvgs(int period, String fileName) {
-        ArrayList<Double> closingPrices = extractClosing(fileName);
-        int length = closingPrices.size();
+        // copied so callers may still change the array they get
+        return SeriesCache.shared().simpMovingAvgs(fileName, period).clone();
+    }
+
+    // computes the SMAs of an already loaded series so the file does not
+    // have to be parsed again; returns arr of SMAs
+    public static double[] simpMovingAvgs(int period, PriceSeries series) {
+        int length = series.size();
+        checkPeriod(period, length);
+        Profiler.Stage stage = Profiler.start("indicator", "sma", period);
+        // SMA arr needs length starting from date of end of first time period
+        // to last day for stock data
+        double[] simpMovingAvgs = new double[length - period + 1];
+        simpMovingAvgs(period, series.closes(), series.offset(), length,
+                       simpMovingAvgs);
+        Profiler.end(stage, length);
+        return simpMovingAvgs;
+    }
+
+    // computes the SMAs of values[from, from + length) in O(length) time and
+    // writes the length - period + 1 results to the start of out, so batch
+    // runs can reuse one output buffer; the array is read through the
+    // buffer kernel below, so both share one implementation
+    public static void simpMovingAvgs(int period, double[] values, int from,
+                                      int length, double[] out) {
+        simpMovingAvgs(period, DoubleBuffer.wrap(values), from, length, out);
+    }
+
+    // computes the SMAs of values[from, from + length) like the method
+    // above, reading the values in place from a buffer (such as a column
+    // of a MappedSeries, outside the heap) with absolute gets; a running
+    // window sum is updated by adding the newest value and subtracting the
+    // oldest, with Kahan compensation so rounding errors do not build up
+    // over long series
+    public static void simpMovingAvgs(int period, DoubleBuffer values,
+                                      int from, int length, double[] out) {
+        checkPeriod(period, length);
+        if (out.length < length - period + 1) {
+            throw new IllegalArgumentException("output buffer too small for "
+                                                       + "# of SMAs");
+        }
+        // sum of the first (non shifted) time period
+        double periodTotal = 0.0;
+        double compensation = 0.0;
+        for (int i = from; i < from + period; i++) {
+            double y = values.get(i) - compensation;
+            double t = periodTotal + y;
+            compensation = (t - periodTotal) - y;
+            periodTotal = t;
+        }
+        out[0] = periodTotal / period;
+        // shifts the time interval one day at a time, adding the day that
+        // enters the window and removing the day that leaves it
+        int end = from + length;
+        int k = 1;
+        for (int i = from + period; i < end; i++) {
+            double y = (values.get(i) - values.get(i - period)) - compensation;
+            double t = periodTotal + y;
+            compensation = (t - periodTotal) - y;
+            periodTotal = t;
+            out[k++] = periodTotal / period;
+        }
+    }
+
+    // computes the SMAs of the rows of series dated from fromDate to toDate
+    // (both included, seconds since 1970-01-01), as if that range was its
+    // own .csv file; the range is found by binary search and not copied
+    public static double[] simpMovingAvgs(int period, PriceSeries series,
+                                          long fromDate, long toDate) {
+        return simpMovingAvgs(period, series.between(fromDate, toDate));
+    }
+
+    // throws an exception if the time period cannot be used on length days
+    private static void checkPeriod(int period, int length) {
+        if (period < 1) {
+            throw new IllegalArgumentException("time period must be positive");
+        }
         if (period > length) {
             // throws exception if specified time period larger than number
             // of daily closing prices in stock file
             throw new IllegalArgumentException("given time period larger than "
                                                        + "# of days of data");
         }
+    }
 
-        int endPoint = period;
-        // SMA arr needs length starting from date of end of first time period
-        // to last day for stock data
-        int SIZE = length - period + 1;
-        double[] simpMovingAvgs = new double[SIZE];
-        // outer array iterates until each SMA is added to arr of SMA values
-        // for stock data
-        for (int i = 0; i < SIZE; i++) {
+    // given a time period and loaded series, returns the largest difference
+    // between simpMovingAvgs and summing every window from scratch; test
+    // for the running sum in simpMovingAvgs
+    private static double maxSMAError(int period, PriceSeries series) {
+        double[] simpMovingAvgs = simpMovingAvgs(period, series);
+        double maxError = 0.0;
+        for (int i = 0; i < simpMovingAvgs.length; i++) {
             double periodTotal = 0.0;
-            if (endPoint <= length) {
-                // since moving average, initial date (i) and final date
-                // endPoint(shift) shift for each iteration of outer loop
-                for (int j = i; j < endPoint; j++) {
-                    // computes total amount of closing Prices for each
-                    // shifted time interval
-                    periodTotal += closingPrices.get(j);
-                }
-                // simple moving average for current interval in range
-                double sma = periodTotal / period;
-                simpMovingAvgs[i] = sma;
-                endPoint++;
+            for (int j = i; j < i + period; j++) {
+                periodTotal += series.close(j);
             }
+            double error = Math.abs(simpMovingAvgs[i] - periodTotal / period);
+            maxError = Math.max(maxError, error);
         }
-        return simpMovingAvgs;
+        return maxError;
     }
 
     // given a time period (days) and fileName, prints values in arr of simple
@@ -99,7 +178,13 @@ public class Indicators {
     // given a time period (days) and fileName, calculates and returns
     // first simple moving average at end of first time period for stock
     private static double firstSMA(int period, String fileName) {
-        ArrayList<Double> closingPrices = extractClosing(fileName);
+        return firstSMA(period, SeriesCache.shared().series(fileName));
+    }
+
+    // given a time period (days) and loaded series, calculates and returns
+    // first simple moving average at end of first time period for stock
+    private static double firstSMA(int period, PriceSeries series) {
+        ArrayList<Double> closingPrices = extractClosing(series);
         double periodTotal = 0.0;
         // iterates through first (non shifted) time period and calculates
         // total sum of closing prices
@@ -111,12 +196,30 @@ public class Indicators {
 
     // given a specified time interval and fileName, computes exponential
     // moving average (more weight to recent closing prices in interval) for
-    // each shifting time interval; returns ArrayList of EMAs for stock
+    // each shifting time interval; returns ArrayList of EMAs for stock.
+    // Repeated calls for an unchanged file are answered from the shared
+    // SeriesCache
     public static ArrayList<Double> expMovingAverage(int period, String fileName) {
-        double prevEMA = firstSMA(period, fileName);
+        // one EMA per day, NaN before the end of the first time period
+        double[] emas = SeriesCache.shared().movingAvgs(fileName, Kind.EMA,
+                                                        period);
+        ArrayList<Double> expMovingAvgs =
+                new ArrayList<Double>(emas.length - period + 1);
+        for (int i = period - 1; i < emas.length; i++) {
+            expMovingAvgs.add(emas[i]);
+        }
+        return expMovingAvgs;
+    }
+
+    // computes the EMAs of an already loaded series so the file does not
+    // have to be parsed again; returns ArrayList of EMAs for stock
+    public static ArrayList<Double> expMovingAverage(int period,
+                                                     PriceSeries series) {
+        Profiler.Stage stage = Profiler.start("indicator", "ema", period);
+        double prevEMA = firstSMA(period, series);
         // smoothing allows for better trend line for stock data graph
         double SMOOTHING_CONSTANT = 2.0 / (period + 1);
-        ArrayList<Double> closingPrices = extractClosing(fileName);
+        ArrayList<Double> closingPrices = extractClosing(series);
         int length = closingPrices.size();
         ArrayList<Double> expMovingAvgs = new ArrayList<Double>();
         expMovingAvgs.add(prevEMA);
@@ -127,9 +230,464 @@ public class Indicators {
             prevEMA = currentEMA;
             expMovingAvgs.add(currentEMA);
         }
+        Profiler.end(stage, length);
         return expMovingAvgs;
     }
 
+    // computes the EMAs of the rows of series dated from fromDate to toDate
+    // (both included), as if that range was its own .csv file
+    public static ArrayList<Double> expMovingAverage(int period,
+                                                     PriceSeries series,
+                                                     long fromDate,
+                                                     long toDate) {
+        return expMovingAverage(period, series.between(fromDate, toDate));
+    }
+
+    // computes a moving average of the given kind for every period in
+    // periods with a single pass over values[from, from + length). Results
+    // are written to out as one flat array with a row of length values per
+    // period: out[p * length + i] is the average of periods[p] ending at
+    // day i, and NaN for the first periods[p] - 1 days that have no
+    // average yet. out needs at least periods.length * length entries
+    public static void movingAvgs(Kind kind, int[] periods, double[] values,
+                                  int from, int length, double[] out) {
+        movingAvgs(kind, periods, DoubleBuffer.wrap(values), from, length,
+                   out);
+    }
+
+    // computes the moving averages of values[from, from + length) like the
+    // method above, reading the values in place from a buffer (such as a
+    // column of a MappedSeries, outside the heap); the array version reads
+    // its array through this one
+    public static void movingAvgs(Kind kind, int[] periods,
+                                  DoubleBuffer values, int from, int length,
+                                  double[] out) {
+        int count = periods.length;
+        for (int period : periods) checkPeriod(period, length);
+        if (out.length < count * length) {
+            throw new IllegalArgumentException("output buffer too small for "
+                                                       + "# of averages");
+        }
+        // running window sums (with Kahan compensation) for SMAs, current
+        // averages for EMAs
+        double[] totals = new double[count];
+        double[] compensations = new double[count];
+        double[] smoothing = new double[count];
+        for (int p = 0; p < count; p++) {
+            smoothing[p] = 2.0 / (periods[p] + 1);
+        }
+
+        // single pass over the closing prices, updating every period at
+        // each day
+        for (int i = 0; i < length; i++) {
+            double close = values.get(from + i);
+            for (int p = 0; p < count; p++) {
+                int period = periods[p];
+                int index = p * length + i;
+                if (kind == Kind.SMA) {
+                    // adds day entering the window and removes the day
+                    // leaving it
+                    double delta = i >= period
+                            ? close - values.get(from + i - period) : close;
+                    double y = delta - compensations[p];
+                    double t = totals[p] + y;
+                    compensations[p] = (t - totals[p]) - y;
+                    totals[p] = t;
+                    out[index] = i >= period - 1
+                            ? totals[p] / period : Double.NaN;
+                }
+                else if (i < period - 1) {
+                    // sums the first time period for the first EMA
+                    totals[p] += close;
+                    out[index] = Double.NaN;
+                }
+                else if (i == period - 1) {
+                    // first EMA is the SMA of the first time period
+                    totals[p] = (totals[p] + close) / period;
+                    out[index] = totals[p];
+                }
+                else {
+                    totals[p] = (close - totals[p]) * smoothing[p] + totals[p];
+                    out[index] = totals[p];
+                }
+            }
+        }
+    }
+
+    // computes a moving average of the given kind for every period in
+    // periods over the closing prices of a mapped series, without copying
+    // them onto the heap; returns the flat array of rows described above
+    // movingAvgs(kind, periods, values, ...)
+    public static double[] movingAvgs(Kind kind, int[] periods,
+                                      MappedSeries series) {
+        int length = series.size();
+        Profiler.Stage stage = Profiler.start(
+                "indicator", kind == Kind.SMA ? "sma mapped" : "ema mapped",
+                periods);
+        double[] out = new double[periods.length * length];
+        movingAvgs(kind, periods, series.closes(), 0, length, out);
+        Profiler.end(stage, length);
+        return out;
+    }
+
+    // computes a moving average of the given kind for every period in
+    // periods over an already loaded series; returns the flat array of
+    // rows described above movingAvgs(kind, periods, values, ...)
+    public static double[] movingAvgs(Kind kind, int[] periods,
+                                      PriceSeries series) {
+        int length = series.size();
+        Profiler.Stage stage = Profiler.start(
+                "indicator", kind == Kind.SMA ? "sma batch" : "ema batch",
+                periods);
+        double[] out = new double[periods.length * length];
+        movingAvgs(kind, periods, series.closes(), series.offset(), length,
+                   out);
+        Profiler.end(stage, length);
+        return out;
+    }
+
+    // computes the moving averages of the rows of series dated from fromDate
+    // to toDate (both included), one row of the range's length per period
+    public static double[] movingAvgs(Kind kind, int[] periods,
+                                      PriceSeries series, long fromDate,
+                                      long toDate) {
+        return movingAvgs(kind, periods, series.between(fromDate, toDate));
+    }
+
+    // the kernels below take primitive columns and a window [from, from +
+    // length) and write one value per day to the start of each output
+    // array (out[i] belongs to day from + i, NaN before the first day that
+    // has a value), allocating nothing per element. Running recurrences
+    // (EMA, Wilder smoothing, rolling sums) are inherently sequential; the
+    // element-wise steps (true range, band offsets, MACD differences,
+    // price times volume) are kept in separate plain counted loops over
+    // arrays so C2 can auto-vectorize them. The Vector API would need the
+    // incubator module (--add-modules jdk.incubator.vector) on every javac
+    // and java command line, so it is not used
+
+    // throws an exception if an output array cannot hold length values
+    private static void checkOutput(double[] out, int length) {
+        if (out.length < length) {
+            throw new IllegalArgumentException("output buffer too small for "
+                                                       + "# of days");
+        }
+    }
+
+    // computes Bollinger Bands of values: middle is the SMA of period days,
+    // upper and lower are width population standard deviations above and
+    // below it. Mean and variance are kept with a sliding Welford update,
+    // which stays accurate on long series where sum of squares minus
+    // square of sum would cancel
+    public static void bollingerBands(int period, double width,
+                                      double[] values, int from, int length,
+                                      double[] middle, double[] upper,
+                                      double[] lower) {
+        checkPeriod(period, length);
+        checkOutput(middle, length);
+        checkOutput(upper, length);
+        checkOutput(lower, length);
+        double mean = 0.0;
+        double m2 = 0.0;
+        for (int i = 0; i < length; i++) {
+            double x = values[from + i];
+            if (i < period) {
+                // window still filling: adds x to the running statistics
+                double delta = x - mean;
+                mean += delta / (i + 1);
+                m2 += delta * (x - mean);
+            }
+            else {
+                // window slides: x enters and the oldest value leaves
+                double old = values[from + i - period];
+                double oldMean = mean;
+                mean += (x - old) / period;
+                m2 += (x - old) * (x - mean + old - oldMean);
+            }
+            middle[i] = i >= period - 1 ? mean : Double.NaN;
+            // standard deviation for now, turned into the bands below
+            upper[i] = i >= period - 1
+                    ? Math.sqrt(Math.max(m2 / period, 0.0)) : Double.NaN;
+        }
+        for (int i = 0; i < length; i++) {
+            double offset = width * upper[i];
+            upper[i] = middle[i] + offset;
+            lower[i] = middle[i] - offset;
+        }
+    }
+
+    // computes the relative strength index of values with Wilder's
+    // smoothing: the first average gain and loss are the means of the
+    // first period day to day changes, later ones are smoothed with weight
+    // 1 / period. The first RSI is on day period
+    public static void rsi(int period, double[] values, int from, int length,
+                           double[] out) {
+        rsi(period, DoubleBuffer.wrap(values), from, length, out);
+    }
+
+    // computes the RSI of values[from, from + length) like the method
+    // above, reading the values in place from a buffer; the array version
+    // reads its array through this one
+    public static void rsi(int period, DoubleBuffer values, int from,
+                           int length, double[] out) {
+        // needs period changes, so period + 1 days; period itself must be
+        // positive since the averages divide by it
+        checkPeriod(period, length);
+        checkPeriod(period + 1, length);
+        checkOutput(out, length);
+        double averageGain = 0.0;
+        double averageLoss = 0.0;
+        out[0] = Double.NaN;
+        for (int i = 1; i < length; i++) {
+            double change = values.get(from + i) - values.get(from + i - 1);
+            double gain = Math.max(change, 0.0);
+            double loss = Math.max(-change, 0.0);
+            if (i <= period) {
+                averageGain += gain / period;
+                averageLoss += loss / period;
+                if (i < period) {
+                    out[i] = Double.NaN;
+                    continue;
+                }
+            }
+            else {
+                averageGain = (averageGain * (period - 1) + gain) / period;
+                averageLoss = (averageLoss * (period - 1) + loss) / period;
+            }
+            out[i] = averageLoss == 0.0
+                    ? 100.0 : 100.0 - 100.0 / (1.0 + averageGain / averageLoss);
+        }
+    }
+
+    // computes the EMAs of values[from, from + length) like movingAvgs (the
+    // first EMA is the SMA of the first period values) and writes them to
+    // out[outFrom, outFrom + length)
+    private static void expMovingAvgs(int period, double[] values, int from,
+                                      int length, double[] out, int outFrom) {
+        double smoothing = 2.0 / (period + 1);
+        double ema = 0.0;
+        for (int i = 0; i < length; i++) {
+            double x = values[from + i];
+            if (i < period - 1) {
+                ema += x;
+                out[outFrom + i] = Double.NaN;
+                continue;
+            }
+            if (i == period - 1) ema = (ema + x) / period;
+            else ema = (x - ema) * smoothing + ema;
+            out[outFrom + i] = ema;
+        }
+    }
+
+    // computes MACD of values: macd is the fast EMA minus the slow EMA
+    // (first on day slow - 1), signal is the EMA of macd over signalPeriod
+    // days and histogram is macd minus signal (both first on day slow +
+    // signalPeriod - 2)
+    public static void macd(int fast, int slow, int signalPeriod,
+                            double[] values, int from, int length,
+                            double[] macd, double[] signal,
+                            double[] histogram) {
+        if (fast >= slow) {
+            throw new IllegalArgumentException("fast period must be shorter "
+                                                       + "than slow period");
+        }
+        checkPeriod(fast, length);
+        // the signal period must be positive on its own, not only in sum
+        checkPeriod(signalPeriod, length);
+        checkPeriod(slow + signalPeriod - 1, length);
+        checkOutput(macd, length);
+        checkOutput(signal, length);
+        checkOutput(histogram, length);
+        // slow EMA goes in signal until the signal line replaces it
+        expMovingAvgs(fast, values, from, length, macd, 0);
+        expMovingAvgs(slow, values, from, length, signal, 0);
+        for (int i = 0; i < length; i++) {
+            macd[i] -= signal[i];
+        }
+        // signal line starts where macd does; the days before it keep the
+        // slow EMA's NaN
+        int first = slow - 1;
+        expMovingAvgs(signalPeriod, macd, first, length - first, signal,
+                      first);
+        for (int i = 0; i < length; i++) {
+            histogram[i] = macd[i] - signal[i];
+        }
+    }
+
+    // computes the average true range of high, low and close with Wilder's
+    // smoothing; the true range of a day is the largest of its high - low
+    // and the distances of its high and low from the previous close. The
+    // first ATR is the mean true range of the first period days
+    public static void averageTrueRange(int period, double[] high,
+                                        double[] low, double[] close,
+                                        int from, int length, double[] out) {
+        checkPeriod(period, length);
+        checkOutput(out, length);
+        // true ranges, element-wise so this loop can be vectorized
+        out[0] = high[from] - low[from];
+        for (int i = 1; i < length; i++) {
+            double h = high[from + i];
+            double l = low[from + i];
+            double previous = close[from + i - 1];
+            out[i] = Math.max(h - l, Math.max(Math.abs(h - previous),
+                                              Math.abs(l - previous)));
+        }
+        // smooths the true ranges in place
+        double atr = 0.0;
+        for (int i = 0; i < period; i++) {
+            atr += out[i];
+            out[i] = Double.NaN;
+        }
+        atr /= period;
+        out[period - 1] = atr;
+        for (int i = period; i < length; i++) {
+            atr = (atr * (period - 1) + out[i]) / period;
+            out[i] = atr;
+        }
+    }
+
+    // computes the volume weighted average price, the running sum of
+    // typical price ((high + low + close) / 3) times volume divided by the
+    // running volume. With sessions the sums restart at the first row of
+    // every day (for intraday series), otherwise they run over the window
+    public static void vwap(double[] high, double[] low, double[] close,
+                            long[] volume, long[] dates, int from, int length,
+                            boolean sessions, double[] out) {
+        checkOutput(out, length);
+        double priceVolume = 0.0;
+        double totalVolume = 0.0;
+        long day = Long.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            int row = from + i;
+            double typical = (high[row] + low[row] + close[row]) / 3.0;
+            if (sessions) {
+                long rowDay = Math.floorDiv(dates[row],
+                                            PriceSeries.SECONDS_PER_DAY);
+                if (rowDay != day) {
+                    day = rowDay;
+                    priceVolume = 0.0;
+                    totalVolume = 0.0;
+                }
+            }
+            priceVolume += typical * volume[row];
+            totalVolume += volume[row];
+            // rows without any volume yet fall back to the typical price
+            out[i] = totalVolume > 0 ? priceVolume / totalVolume : typical;
+        }
+    }
+
+    // returns the Bollinger Bands of a loaded series as {middle, upper,
+    // lower}, one value per day
+    public static double[][] bollingerBands(int period, double width,
+                                            PriceSeries series) {
+        int length = series.size();
+        Profiler.Stage stage = Profiler.start("indicator", "bollinger",
+                                              period);
+        double[][] bands = new double[3][length];
+        bollingerBands(period, width, series.closes(), series.offset(),
+                       length, bands[0], bands[1], bands[2]);
+        Profiler.end(stage, length);
+        return bands;
+    }
+
+    // returns the RSI of a loaded series, one value per day
+    public static double[] rsi(int period, PriceSeries series) {
+        Profiler.Stage stage = Profiler.start("indicator", "rsi", period);
+        double[] out = new double[series.size()];
+        rsi(period, series.closes(), series.offset(), series.size(), out);
+        Profiler.end(stage, series.size());
+        return out;
+    }
+
+    // returns MACD of a loaded series as {macd, signal, histogram}, one
+    // value per day
+    public static double[][] macd(int fast, int slow, int signalPeriod,
+                                  PriceSeries series) {
+        int length = series.size();
+        // the periods array is only made while profiling
+        Profiler.Stage stage = Profiler.isEnabled() ? Profiler.start(
+                "indicator", "macd", new int[] { fast, slow, signalPeriod })
+                : null;
+        double[][] lines = new double[3][length];
+        macd(fast, slow, signalPeriod, series.closes(), series.offset(),
+             length, lines[0], lines[1], lines[2]);
+        Profiler.end(stage, length);
+        return lines;
+    }
+
+    // returns the ATR of a loaded series, one value per day
+    public static double[] averageTrueRange(int period, PriceSeries series) {
+        Profiler.Stage stage = Profiler.start("indicator", "atr", period);
+        double[] out = new double[series.size()];
+        averageTrueRange(period, series.highs(), series.lows(),
+                         series.closes(), series.offset(), series.size(), out);
+        Profiler.end(stage, series.size());
+        return out;
+    }
+
+    // returns the VWAP of a loaded series, one value per row; intraday
+    // series restart it every day, daily series run it over the series
+    public static double[] vwap(PriceSeries series) {
+        Profiler.Stage stage = Profiler.start("indicator", "vwap");
+        int length = series.size();
+        boolean intraday = false;
+        for (int i = 0; i < length && !intraday; i++) {
+            intraday = series.date(i) % PriceSeries.SECONDS_PER_DAY != 0;
+        }
+        double[] out = new double[length];
+        vwap(series.highs(), series.lows(), series.closes(), series.volumes(),
+             series.dates(), series.offset(), length, intraday, out);
+        Profiler.end(stage, length);
+        return out;
+    }
+
+    // given a time period and loaded series, returns the largest difference
+    // between the Bollinger Bands and a mean and standard deviation summed
+    // from scratch for every window; test for bollingerBands
+    private static double maxBandError(int period, PriceSeries series) {
+        double[][] bands = bollingerBands(period, 2.0, series);
+        double maxError = 0.0;
+        for (int i = period - 1; i < series.size(); i++) {
+            double total = 0.0;
+            for (int j = i - period + 1; j <= i; j++) total += series.close(j);
+            double mean = total / period;
+            double squares = 0.0;
+            for (int j = i - period + 1; j <= i; j++) {
+                double deviation = series.close(j) - mean;
+                squares += deviation * deviation;
+            }
+            double deviation = Math.sqrt(squares / period);
+            maxError = Math.max(maxError, Math.abs(bands[0][i] - mean));
+            maxError = Math.max(maxError, Math.abs(
+                    bands[1][i] - (mean + 2.0 * deviation)));
+            maxError = Math.max(maxError, Math.abs(
+                    bands[2][i] - (mean - 2.0 * deviation)));
+        }
+        return maxError;
+    }
+
+    // given periods and a loaded series, returns the largest difference
+    // between the batch movingAvgs rows and the single period methods;
+    // test for movingAvgs
+    private static double maxBatchError(int[] periods, PriceSeries series) {
+        int length = series.size();
+        double[] sma = movingAvgs(Kind.SMA, periods, series);
+        double[] ema = movingAvgs(Kind.EMA, periods, series);
+        double maxError = 0.0;
+        for (int p = 0; p < periods.length; p++) {
+            int period = periods[p];
+            double[] simpMovingAvgs = simpMovingAvgs(period, series);
+            ArrayList<Double> expMovingAvgs = expMovingAverage(period, series);
+            for (int i = period - 1; i < length; i++) {
+                int index = p * length + i;
+                maxError = Math.max(maxError, Math.abs(
+                        sma[index] - simpMovingAvgs[i - period + 1]));
+                maxError = Math.max(maxError, Math.abs(
+                        ema[index] - expMovingAvgs.get(i - period + 1)));
+            }
+        }
+        return maxError;
+    }
+
     // given time period and file name, prints each exp moving avg in ArrayList
     private static void printEMA(int period, String fileName) {
         ArrayList<Double> expMovingAvgs = expMovingAverage(period, fileName);
@@ -168,10 +726,38 @@ public class Indicators {
         // tests simpMovingAvgs method by printing number of SMAs
         StdOut.println("# of SMA: " + Indicators.numSMA(period, fileName));
         StdOut.println("First SMA: " + Indicators.firstSMA(period, fileName));
+        // tests running sum of simpMovingAvgs against summing every window
+        StdOut.println("Max SMA error: " + Indicators.maxSMAError(
+                period, PriceSeries.load(fileName)));
 
         // tests expMovingAverage method by printing all EMAs to StdOut
         Indicators.printEMA(period, fileName);
         // tests expMovingAvg method by printing number of EMAs
         StdOut.println("# of EMA: " + Indicators.numEMA(period, fileName));
+
+        // tests movingAvgs batch against the single period methods for
+        // every period up to the given one
+        int[] periods = new int[period];
+        for (int i = 0; i < period; i++) periods[i] = i + 1;
+        StdOut.println("Max batch error: " + Indicators.maxBatchError(
+                periods, PriceSeries.load(fileName)));
+
+        // tests bollingerBands against summing every window from scratch
+        // and prints the last value of every other indicator
+        PriceSeries series = PriceSeries.load(fileName);
+        int last = series.size() - 1;
+        StdOut.println("Max Bollinger error: "
+                               + Indicators.maxBandError(period, series));
+        if (last > period) {
+            StdOut.println("Last RSI: " + rsi(period, series)[last]);
+        }
+        StdOut.println("Last ATR: " + averageTrueRange(period, series)[last]);
+        StdOut.println("Last VWAP: " + vwap(series)[last]);
+        if (last >= 33) {
+            double[][] lines = macd(12, 26, 9, series);
+            StdOut.println("Last MACD: " + lines[0][last] + " signal: "
+                                   + lines[1][last] + " histogram: "
+                                   + lines[2][last]);
+        }
     }
 }
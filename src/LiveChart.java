@@ -0,0 +1,217 @@
+/*
+LiveChart.java
+This class's purpose is to keep a chart of a growing .csv file up to date
+(StockClient --follow). The file is watched with a WatchService and only
+the appended bytes are parsed (CSVTail); each new row is drawn as one more
+candlestick plus one more segment of every SMA and EMA line, using
+SmaState and EmaState so no average is recomputed. The axes leave some
+room to grow, and the whole chart is only redrawn when a new row falls
+outside them. The StdDraw window is double buffered, so a frame only
+appears once it is complete
+ */
+// importing file and concurrency libraries
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+public class LiveChart {
+    // room left on the axes for new rows, as a fraction of the rows (at
+    // least MIN_HEADROOM_ROWS) and of the price range drawn
+    private static final double HEADROOM = 0.25;
+    private static final int MIN_HEADROOM_ROWS = 20;
+    // the file is also checked this often without a watch event, since
+    // some platforms' watch services only poll every few seconds
+    private static final long POLL_MILLIS = 500;
+
+    private final ChartCanvas canvas;
+    private final int[] periods;
+    private final SmaState[] smas;
+    private final EmaState[] emas;
+    // rows and prices the current axes have room for
+    private int rows;
+    private double lowest;
+    private double highest;
+    // number of rows drawn so far, and of full redraws
+    private int drawn;
+    private int redraws;
+
+    // creates a live chart on canvas with SMA and EMA lines for periods
+    public LiveChart(ChartCanvas canvas, int[] periods) {
+        this.canvas = canvas;
+        this.periods = periods.clone();
+        this.smas = new SmaState[periods.length];
+        this.emas = new EmaState[periods.length];
+    }
+
+    // clears the canvas and draws every row of series, with axes that
+    // have room for the rows and prices expected next
+    public void redraw(PriceSeries series) {
+        int size = series.size();
+        double low = size > 0 ? series.minLow(0, size) : 0.0;
+        double high = size > 0 ? series.maxHigh(0, size) : 1.0;
+        double range = high > low ? high - low : 1.0;
+        rows = size + Math.max(MIN_HEADROOM_ROWS, (int) (HEADROOM * size));
+        lowest = low - HEADROOM * range;
+        highest = high + HEADROOM * range;
+
+        canvas.clear();
+        StockGraph.setScales(canvas, series, 0, rows, lowest, highest);
+        StockGraph.drawCandlesticks(canvas, series);
+        int longest = 0;
+        for (int p = 0; p < periods.length; p++) {
+            smas[p] = new SmaState(periods[p]);
+            emas[p] = new EmaState(periods[p]);
+            longest = Math.max(longest, periods[p]);
+        }
+        if (size >= longest) {
+            StockGraph.drawMovingAvgs(canvas, Indicators.Kind.SMA, periods,
+                                      series);
+            StockGraph.drawMovingAvgs(canvas, Indicators.Kind.EMA, periods,
+                                      series);
+            for (int p = 0; p < periods.length; p++) {
+                smas[p].seed(series);
+                emas[p].seed(series);
+            }
+        }
+        else {
+            // too few rows for every average (early in the day): the rows
+            // are replayed so each line starts as soon as it can
+            for (int i = 0; i < size; i++) addClose(series.close(i));
+        }
+        drawn = size;
+        redraws++;
+    }
+
+    // draws the rows series gained since the last redraw or update: one
+    // candlestick and one segment per line for each, unless a row does not
+    // fit the axes, in which case everything is redrawn
+    public void update(PriceSeries series) {
+        int size = series.size();
+        for (int i = drawn; i < size; i++) {
+            // row i is drawn at x = i + 1
+            if (i >= rows || series.high(i) > highest
+                    || series.low(i) < lowest) {
+                redraw(series);
+                return;
+            }
+        }
+        for (int i = drawn; i < size; i++) {
+            StockGraph.drawCandlestick(canvas, series, i);
+            addClose(series.close(i));
+        }
+        drawn = size;
+    }
+
+    // adds a closing price to every moving average and draws the segments
+    // it completes
+    private void addClose(double close) {
+        for (SmaState sma : smas) sma.add(close);
+        for (EmaState ema : emas) ema.add(close);
+        StockGraph.extendSMAs(canvas, smas);
+        StockGraph.extendEMAs(canvas, emas);
+    }
+
+    // returns the number of full redraws so far
+    public int redraws() {
+        return redraws;
+    }
+
+    // draws fileName in the StdDraw window and keeps the chart up to date
+    // as rows are appended to it; never returns
+    public static void follow(String fileName, int[] periods)
+            throws IOException, InterruptedException {
+        StdDrawCanvas screen = new StdDrawCanvas();
+        screen.setCanvasSize(1200, 850);
+        screen.enableDoubleBuffering();
+        CSVTail tail = new CSVTail(fileName);
+        tail.read();
+        reportMalformed(tail);
+        LiveChart chart = new LiveChart(screen, periods);
+        chart.redraw(tail.series());
+        screen.show();
+
+        Path file = tail.path().toAbsolutePath();
+        Path directory = file.getParent();
+        try (WatchService watcher = directory.getFileSystem()
+                                             .newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                               StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // skips changes to other files in the directory
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object name = event.context();
+                        if (file.getFileName().equals(name)
+                                || event.kind()
+                                == StandardWatchEventKinds.OVERFLOW) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (!changed) continue;
+                }
+                int added = tail.read();
+                reportMalformed(tail);
+                if (added == 0) continue;
+                // file was replaced or truncated, every row may be new
+                if (added < 0) chart.redraw(tail.series());
+                else chart.update(tail.series());
+                screen.show();
+            }
+        }
+    }
+
+    // prints the malformed rows the tail left out since the last call, so
+    // one bad appended row is reported without ending the live chart
+    private static void reportMalformed(CSVTail tail) {
+        for (CSVRowParser.Malformed row : tail.takeMalformed()) {
+            StdOut.println("skipped " + tail.path() + " " + row);
+        }
+    }
+
+    // tests methods in LiveChart class without a window: draws the first
+    // rows of a file on an image, then adds the remaining rows one at a
+    // time and compares the time per row with redrawing everything, e.g.
+    // java LiveChart TSLA-1YEAR.csv 10 50 [chart.png]
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        PriceSeries series = PriceSeries.load(args[0]);
+        int[] periods = StockClient.parsePeriods(new String[] { args[1] }, 0);
+        int first = Integer.parseInt(args[2]);
+
+        ImageCanvas canvas = new ImageCanvas(1200, 850);
+        LiveChart chart = new LiveChart(canvas, periods);
+        chart.redraw(series.slice(0, first));
+        long start = System.nanoTime();
+        for (int size = first + 1; size <= series.size(); size++) {
+            chart.update(series.slice(0, size));
+        }
+        double incremental = (System.nanoTime() - start) / 1e6;
+        int rowsAdded = series.size() - first;
+
+        // redrawing the whole chart for every new row, as before
+        ImageCanvas full = new ImageCanvas(1200, 850);
+        LiveChart redrawn = new LiveChart(full, periods);
+        start = System.nanoTime();
+        for (int size = first + 1; size <= series.size(); size++) {
+            redrawn.redraw(series.slice(0, size));
+        }
+        double redrawing = (System.nanoTime() - start) / 1e6;
+
+        StdOut.printf("%d rows added, %d full redraws%n", rowsAdded,
+                      chart.redraws() - 1);
+        StdOut.printf("incremental: %.3f ms/row, full redraw: %.3f ms/row%n",
+                      incremental / rowsAdded, redrawing / rowsAdded);
+        if (args.length > 3) canvas.savePNG(new File(args[3]));
+        canvas.dispose();
+        full.dispose();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+LoaderThroughput.java
+This class's purpose is to compare how fast CSVReader.parseCSV (commons-csv
+records stored in a symbol table) and CSVReader.parseSeries (streaming
+primitive columns) load a large stock file. The rows of a Yahoo Finance
+.csv file are replicated with consecutive one-minute timestamps into a
+temporary file with millions of rows, which each loader then reads
+ */
+// importing file libraries
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+
+public class LoaderThroughput {
+    // writes rows copies of the data rows of source into a new temporary
+    // file, giving every row the next minute as its date so no two rows of
+    // the copy share a date; returns the temporary file
+    public static File replicate(String source, int rows) throws IOException {
+        ArrayList<String> values = new ArrayList<String>();
+        // keeps everything after the date of each data row in source
+        try (BufferedReader in = new BufferedReader(new FileReader(source))) {
+            String line = in.readLine();
+            while ((line = in.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma > 0) values.add(line.substring(comma));
+            }
+        }
+
+        File copy = File.createTempFile("replicated", ".csv");
+        copy.deleteOnExit();
+        DateTimeFormatter format =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        LocalDateTime time = LocalDateTime.of(2000, 1, 3, 0, 0);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(copy))) {
+            out.write("Date,Open,High,Low,Close,Adj Close,Volume");
+            out.newLine();
+            for (int i = 0; i < rows; i++) {
+                out.write(format.format(time));
+                out.write(values.get(i % values.size()));
+                out.newLine();
+                time = time.plusMinutes(1);
+            }
+        }
+        return copy;
+    }
+
+    // loads path with parseCSV and returns the elapsed nanoseconds
+    private static long timeParseCSV(String path) {
+        long start = System.nanoTime();
+        ST<String, double[]> dataset = CSVReader.parseCSV(path);
+        long elapsed = System.nanoTime() - start;
+        if (dataset.size() == 0) throw new IllegalStateException();
+        return elapsed;
+    }
+
+    // loads path with parseSeries and returns the elapsed nanoseconds
+    private static long timeParseSeries(String path) {
+        long start = System.nanoTime();
+        PriceSeries series = CSVReader.parseSeries(path);
+        long elapsed = System.nanoTime() - start;
+        if (series.size() == 0) throw new IllegalStateException();
+        return elapsed;
+    }
+
+    // prints rows/sec and MB/sec of the fastest of the given timings
+    private static void report(String name, long[] nanos, int rows,
+                               long bytes) {
+        long best = Long.MAX_VALUE;
+        for (long t : nanos) best = Math.min(best, t);
+        double seconds = best / 1e9;
+        StdOut.printf("%-12s %8.3f s %12.0f rows/s %8.1f MB/s%n", name,
+                      seconds, rows / seconds, bytes / 1e6 / seconds);
+    }
+
+    // returns the heap in use after a garbage collection, in MB
+    private static double usedHeapMB() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return (runtime.totalMemory() - runtime.freeMemory()) / 1e6;
+    }
+
+    // compares the two loaders; arguments are the source .csv file, the
+    // number of rows to replicate it to and the number of timed runs, e.g.
+    // java LoaderThroughput test/TSLA-5YEARS.csv 2000000 3
+    public static void main(String[] args) throws IOException {
+        String source = args[0];
+        int rows = Integer.parseInt(args[1]);
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        File copy = replicate(source, rows);
+        String path = copy.getPath();
+        StdOut.println("rows: " + rows + ", file size: "
+                               + copy.length() / 1000000 + " MB");
+
+        long[] csvTimes = new long[runs];
+        long[] seriesTimes = new long[runs];
+        // alternates the loaders so both run with a similarly warm JIT
+        for (int i = 0; i < runs; i++) {
+            csvTimes[i] = timeParseCSV(path);
+            seriesTimes[i] = timeParseSeries(path);
+        }
+        report("parseCSV", csvTimes, rows, copy.length());
+        report("parseSeries", seriesTimes, rows, copy.length());
+
+        // heap held by each loaded result
+        double base = usedHeapMB();
+        ST<String, double[]> dataset = CSVReader.parseCSV(path);
+        StdOut.printf("parseCSV result heap:    %8.1f MB%n",
+                      usedHeapMB() - base);
+        dataset = null;
+        base = usedHeapMB();
+        PriceSeries series = CSVReader.parseSeries(path);
+        StdOut.printf("parseSeries result heap: %8.1f MB%n",
+                      usedHeapMB() - base);
+        StdOut.println(series.size() + " rows loaded");
+    }
+}
@@ -0,0 +1,184 @@
+/*
+MappedSeries.java
+This class's purpose is to read the columns of one ticker straight from
+its memory mapped ColumnFile cache (ColumnFile.map) instead of copying
+them into arrays on the Java heap, so thousands of tickers can be open at
+once with a heap that only holds one small object per ticker. Columns are
+handed out as read-only LongBuffer and DoubleBuffer views in date order,
+which the Indicators kernels that take a DoubleBuffer iterate over in
+place. A MappedSeries never changes and can be read by many threads at
+once
+ */
+// importing nio libraries
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+
+public class MappedSeries {
+    private final String fileName;
+    private final int size;
+    private final LongBuffer dates;
+    private final DoubleBuffer open;
+    private final DoubleBuffer high;
+    private final DoubleBuffer low;
+    private final DoubleBuffer close;
+    private final DoubleBuffer adjClose;
+    private final LongBuffer volume;
+
+    // creates a series over the mapped columns of a cache file (laid out as
+    // described in ColumnFile, starting after the header) with size rows
+    MappedSeries(String fileName, ByteBuffer columns, int size) {
+        this.fileName = fileName;
+        this.size = size;
+        int bytes = 8 * size;
+        this.dates = column(columns, 0, bytes).asLongBuffer();
+        this.open = column(columns, 1, bytes).asDoubleBuffer();
+        this.high = column(columns, 2, bytes).asDoubleBuffer();
+        this.low = column(columns, 3, bytes).asDoubleBuffer();
+        this.close = column(columns, 4, bytes).asDoubleBuffer();
+        this.adjClose = column(columns, 5, bytes).asDoubleBuffer();
+        this.volume = column(columns, 6, bytes).asLongBuffer();
+    }
+
+    // returns the bytes of column number c as a read-only little endian
+    // buffer of its own
+    private static ByteBuffer column(ByteBuffer columns, int c, int bytes) {
+        return columns.slice(c * bytes, bytes).asReadOnlyBuffer()
+                      .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // returns the name of the .csv file the series belongs to
+    public String fileName() {
+        return fileName;
+    }
+
+    // returns the number of rows
+    public int size() {
+        return size;
+    }
+
+    // returns the bytes of the columns, all of them outside the heap
+    public long bytes() {
+        return 7L * 8 * size;
+    }
+
+    // returns the date of row i in seconds since 1970-01-01
+    public long date(int i) {
+        return dates.get(i);
+    }
+
+    // returns the first row whose date is at or after date (size() if
+    // there is none) by binary search over the sorted date column
+    public int firstIndexAtOrAfter(long date) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dates.get(mid) < date) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // returns the opening price of row i
+    public double open(int i) {
+        return open.get(i);
+    }
+
+    // returns the highest price of row i
+    public double high(int i) {
+        return high.get(i);
+    }
+
+    // returns the lowest price of row i
+    public double low(int i) {
+        return low.get(i);
+    }
+
+    // returns the closing price of row i
+    public double close(int i) {
+        return close.get(i);
+    }
+
+    // returns the adjusted closing price of row i
+    public double adjClose(int i) {
+        return adjClose.get(i);
+    }
+
+    // returns the volume of row i
+    public long volume(int i) {
+        return volume.get(i);
+    }
+
+    // below methods return read-only views of whole columns; each call
+    // returns a new view, so callers may move its position freely
+
+    public LongBuffer dates() {
+        return dates.duplicate();
+    }
+
+    public DoubleBuffer opens() {
+        return open.duplicate();
+    }
+
+    public DoubleBuffer highs() {
+        return high.duplicate();
+    }
+
+    public DoubleBuffer lows() {
+        return low.duplicate();
+    }
+
+    public DoubleBuffer closes() {
+        return close.duplicate();
+    }
+
+    public DoubleBuffer adjCloses() {
+        return adjClose.duplicate();
+    }
+
+    public LongBuffer volumes() {
+        return volume.duplicate();
+    }
+
+    // copies the rows into a PriceSeries on the heap, e.g. to chart them
+    public PriceSeries toPriceSeries() {
+        long[] d = new long[size];
+        double[] o = new double[size];
+        double[] h = new double[size];
+        double[] l = new double[size];
+        double[] c = new double[size];
+        double[] a = new double[size];
+        long[] v = new long[size];
+        dates().get(d);
+        opens().get(o);
+        highs().get(h);
+        lows().get(l);
+        closes().get(c);
+        adjCloses().get(a);
+        volumes().get(v);
+        return PriceSeries.fromColumns(d, o, h, l, c, a, v, size);
+    }
+
+    // tests methods in MappedSeries class: maps a file and checks every
+    // row against parsing it, e.g. java MappedSeries TSLA-5YEARS.csv
+    public static void main(String[] args) throws Exception {
+        MappedSeries mapped = ColumnFile.map(args[0]);
+        PriceSeries parsed = CSVReader.parseSeries(args[0]);
+        boolean same = mapped.size() == parsed.size();
+        for (int i = 0; same && i < parsed.size(); i++) {
+            same = mapped.date(i) == parsed.date(i)
+                    && mapped.open(i) == parsed.open(i)
+                    && mapped.high(i) == parsed.high(i)
+                    && mapped.low(i) == parsed.low(i)
+                    && mapped.close(i) == parsed.close(i)
+                    && mapped.adjClose(i) == parsed.adjClose(i)
+                    && mapped.volume(i) == parsed.volume(i);
+        }
+        StdOut.println("rows: " + mapped.size() + ", mapped matches csv: "
+                               + same + ", read only: "
+                               + mapped.closes().isReadOnly());
+    }
+}
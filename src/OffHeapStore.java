@@ -0,0 +1,136 @@
+/*
+OffHeapStore.java
+This class's purpose is to hold a whole universe of tickers (thousands of
+.csv files) without keeping their columns on the Java heap: each ticker is
+a MappedSeries over its ColumnFile cache, so its rows live in the OS page
+cache and the heap only grows by one small object per ticker, however
+many rows there are. Tickers are looked up by name (the .csv file name
+without .csv); the store can be read by many threads at once
+ */
+// importing file, collection and concurrency libraries
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class OffHeapStore {
+    private final ConcurrentHashMap<String, MappedSeries> tickers =
+            new ConcurrentHashMap<String, MappedSeries>();
+
+    // maps every .csv file of directory (writing caches that are missing
+    // or out of date, in parallel) and returns the store of them
+    public static OffHeapStore open(File directory) {
+        OffHeapStore store = new OffHeapStore();
+        File[] files = BatchAnalysis.listCSVFiles(directory);
+        Arrays.stream(files).parallel().forEach(file -> {
+            try {
+                store.add(file);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return store;
+    }
+
+    // maps a .csv file and adds it under its ticker name, replacing an
+    // older mapping of the same ticker; returns the mapped series
+    public MappedSeries add(File csv) throws IOException {
+        MappedSeries series = ColumnFile.map(csv.getPath());
+        tickers.put(BatchAnalysis.ticker(csv), series);
+        return series;
+    }
+
+    // returns the series of a ticker, or null if it is not in the store
+    public MappedSeries get(String ticker) {
+        return tickers.get(ticker);
+    }
+
+    // returns true if the ticker is in the store
+    public boolean contains(String ticker) {
+        return tickers.containsKey(ticker);
+    }
+
+    // returns the names of every ticker, sorted
+    public List<String> tickers() {
+        List<String> names = new ArrayList<String>(tickers.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    // returns the number of tickers
+    public int size() {
+        return tickers.size();
+    }
+
+    // returns the bytes of every ticker's columns, all outside the heap
+    public long bytes() {
+        long bytes = 0;
+        for (MappedSeries series : tickers.values()) bytes += series.bytes();
+        return bytes;
+    }
+
+    // returns the heap in use after a garbage collection, in MB
+    private static double heapMB() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return (runtime.totalMemory() - runtime.freeMemory()) / 1e6;
+    }
+
+    // tests methods in OffHeapStore class: writes a synthetic universe,
+    // then adds its tickers to a store a tenth at a time and prints the
+    // heap in use next to the heap the same tickers take as PriceSeries;
+    // the SMAs of a mapped ticker must equal those of the parsed file,
+    // e.g. java OffHeapStore universe 2000 2500
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int rows = Integer.parseInt(args[2]);
+        File[] files = SyntheticTickers.write(directory, count, rows, 42);
+        // writes every cache first, so the parsing garbage is gone before
+        // the heap is measured
+        OffHeapStore.open(directory);
+
+        OffHeapStore store = new OffHeapStore();
+        List<PriceSeries> onHeap = new ArrayList<PriceSeries>();
+        double base = heapMB();
+        StdOut.println("tickers  off-heap MB  store heap MB  PriceSeries heap MB");
+        int step = Math.max(1, count / 10);
+        for (int t = 0; t < count; t++) {
+            store.add(files[t]);
+            if ((t + 1) % step == 0) {
+                double storeHeap = heapMB() - base;
+                StdOut.printf("%7d  %11.1f  %13.1f%n", t + 1,
+                              store.bytes() / 1e6, storeHeap);
+            }
+        }
+        // the same tickers loaded onto the heap, for comparison
+        double storeHeap = heapMB() - base;
+        for (File file : files) onHeap.add(ColumnFile.load(file.getPath()));
+        StdOut.printf("%7d  %11.1f  %13.1f  %19.1f%n", count,
+                      store.bytes() / 1e6, storeHeap,
+                      heapMB() - base - storeHeap);
+
+        // indicators read the mapped columns in place
+        MappedSeries mapped = store.get(SyntheticTickers.name(0));
+        PriceSeries parsed = CSVReader.parseSeries(files[0].getPath());
+        int[] periods = { 20, 50 };
+        double[] fromMapped = Indicators.movingAvgs(Indicators.Kind.SMA,
+                                                    periods, mapped);
+        double[] fromHeap = Indicators.movingAvgs(Indicators.Kind.SMA,
+                                                  periods, parsed);
+        double[] rsiMapped = new double[rows];
+        double[] rsiHeap = new double[rows];
+        Indicators.rsi(14, mapped.closes(), 0, rows, rsiMapped);
+        Indicators.rsi(14, parsed.closes(), 0, rows, rsiHeap);
+        boolean same = Arrays.equals(fromMapped, fromHeap)
+                && Arrays.equals(rsiMapped, rsiHeap);
+        StdOut.println("mapped indicators match heap: " + same + " ("
+                               + onHeap.size() + " series on heap)");
+    }
+}
@@ -0,0 +1,205 @@
+/*
+OhlcPyramid.java
+This class's purpose is to make zooming over a very long series (years
+of one minute rows) cost the same at every zoom level: the rows are
+merged once into a pyramid of OHLC bars where level L has one bar per
+2^L rows (level 0 is the rows themselves, level 1 bars of 2 rows, level
+2 bars of 4 rows, ...), so each level halves the resolution of the one
+below it. To draw a window of rows on a canvas, the lowest level with no
+more bars in the window than the canvas has pixel columns is used, so a
+chart only reads about one bar per pixel column whether it shows ten
+years or one day.
+
+Bars start at multiples of 2^L rows of the whole series, so the same bars
+are drawn while a window is panned. Only the high and low of each bar are
+stored (about two doubles per row for all levels together); its open and
+close are the open of its first row and the close of its last. The
+pyramid is built on first use and shared by a series and its views
+ */
+// importing Random library
+
+import java.util.Random;
+
+public class OhlcPyramid {
+    private final double[] high;
+    private final double[] low;
+    // number of rows covered, starting at index 0 of the columns
+    private final int size;
+    // highs[L][k] is the highest high of rows [k 2^L, (k + 1) 2^L), lows[L][k]
+    // the lowest low; level 0 is the columns themselves. null until first
+    // used (volatile so a pyramid built by one thread is seen complete)
+    private volatile double[][] highs;
+    private volatile double[][] lows;
+
+    // creates the pyramid over rows [0, size) of the high and low columns;
+    // the levels are only built by the first query
+    public OhlcPyramid(double[] high, double[] low, int size) {
+        this.high = high;
+        this.low = low;
+        this.size = size;
+    }
+
+    // builds every level from the one below it in O(n) time in all;
+    // synchronized so views of one series shared by threads build it once
+    private synchronized void build() {
+        if (highs != null) return;
+        int levels = 1;
+        while (bars(levels - 1) > 1) levels++;
+        double[][] h = new double[levels][];
+        double[][] l = new double[levels][];
+        h[0] = high;
+        l[0] = low;
+        for (int level = 1; level < levels; level++) {
+            int count = bars(level);
+            int below = bars(level - 1);
+            h[level] = new double[count];
+            l[level] = new double[count];
+            for (int k = 0; k < count; k++) {
+                // a bar merges two bars of the level below, the last one
+                // may only have one
+                int first = 2 * k;
+                int second = Math.min(first + 1, below - 1);
+                h[level][k] = Math.max(h[level - 1][first],
+                                       h[level - 1][second]);
+                l[level][k] = Math.min(l[level - 1][first],
+                                       l[level - 1][second]);
+            }
+        }
+        lows = l;
+        highs = h;
+    }
+
+    // returns the number of bars of a level, the last may be partial
+    private int bars(int level) {
+        return (int) (((long) size + (1L << level) - 1) >> level);
+    }
+
+    // returns about how many bytes of heap the levels of a pyramid over
+    // size rows take once built; level 0 is the columns themselves and is
+    // not counted
+    public static long levelBytes(int size) {
+        long bytes = 0;
+        int levels = 1;
+        for (long count = size; count > 1; levels++) {
+            count = (count + 1) / 2;
+            // one high and one low array of count values
+            bytes += 2 * (16 + 8 * count);
+        }
+        // the two arrays of levels
+        return bytes + 2 * (16 + 8L * levels);
+    }
+
+    // returns the number of levels, level 0 included
+    public int levels() {
+        if (highs == null) build();
+        return highs.length;
+    }
+
+    // returns the lowest level at which rows consecutive rows (starting
+    // anywhere) fall in at most width bars; a window can cover one bar
+    // more than rows / 2^L since it need not start on a bar
+    public static int level(int rows, int width) {
+        if (width < 2) width = 2;
+        int level = 0;
+        while ((((long) rows + (1L << level) - 1) >> level) + 1 > width
+                && level < 31) {
+            level++;
+        }
+        return rows <= width ? 0 : level;
+    }
+
+    // returns the highest high of bar k of a level
+    public double high(int level, int k) {
+        if (highs == null) build();
+        return highs[level][k];
+    }
+
+    // returns the lowest low of bar k of a level
+    public double low(int level, int k) {
+        if (highs == null) build();
+        return lows[level][k];
+    }
+
+    // merges rows [from, from + length) of series into the bars of the
+    // level that fits them in width pixel columns, cut at the ends of the
+    // window; x is the view row position the bar is drawn at (row i of
+    // the view at x = i + 1, like StockGraph). Reads O(width) values
+    // whatever the length
+    public static Downsampler.Buckets bars(PriceSeries series, int from,
+                                           int length, int width) {
+        OhlcPyramid pyramid = series.pyramid();
+        int level = level(length, width);
+        int offset = series.offset();
+        // absolute rows of the window
+        int start = offset + from;
+        int end = start + length;
+        int first = start >> level;
+        int last = (end - 1) >> level;
+        Downsampler.Buckets bars = new Downsampler.Buckets(last - first + 1);
+        double[] open = series.opens();
+        double[] close = series.closes();
+        for (int k = first; k <= last; k++) {
+            int barStart = Math.max(k << level, start);
+            int barEnd = (int) Math.min((long) (k + 1) << level, end);
+            int b = k - first;
+            bars.x[b] = (barStart + barEnd - 1 - 2 * offset) / 2.0 + 1;
+            bars.open[b] = open[barStart];
+            bars.close[b] = close[barEnd - 1];
+            if (barStart == k << level
+                    && barEnd == Math.min((long) (k + 1) << level,
+                                          pyramid.size)) {
+                bars.high[b] = pyramid.high(level, k);
+                bars.low[b] = pyramid.low(level, k);
+            }
+            else {
+                // a bar cut by the window's ends only covers part of its
+                // rows, which the range index answers in O(1)
+                bars.high[b] = series.maxHigh(barStart - offset,
+                                              barEnd - offset);
+                bars.low[b] = series.minLow(barStart - offset,
+                                            barEnd - offset);
+            }
+        }
+        return bars;
+    }
+
+    // tests methods in OhlcPyramid class: zooms from a whole file down to
+    // one row, halving the window each step, and checks every
+    // bar's high and low against the range index and that no step reads
+    // more bars than the width, e.g. java OhlcPyramid minutes.csv 1200
+    public static void main(String[] args) {
+        PriceSeries series = PriceSeries.load(args[0]);
+        int width = Integer.parseInt(args[1]);
+        long start = System.nanoTime();
+        StdOut.printf("%d rows, %d levels built in %.1f ms%n", series.size(),
+                      series.pyramid().levels(),
+                      (System.nanoTime() - start) / 1e6);
+
+        Random random = new Random(1);
+        boolean correct = true;
+        StdOut.println("window rows  level  bars  microseconds");
+        for (int rows = series.size(); rows >= 1; rows /= 2) {
+            // a window ending at a random row, as if panned there
+            int from = random.nextInt(series.size() - rows + 1);
+            PriceSeries view = series.slice(from, from + rows);
+            start = System.nanoTime();
+            Downsampler.Buckets bars = bars(view, 0, rows, width);
+            double micros = (System.nanoTime() - start) / 1e3;
+            correct &= bars.count <= width;
+            // bars tile the window, so the rows of each are recomputed
+            int row = 0;
+            for (int b = 0; b < bars.count; b++) {
+                int end = (int) Math.round(2 * (bars.x[b] - 1)) - row + 1;
+                correct &= bars.high[b] == view.maxHigh(row, end)
+                        && bars.low[b] == view.minLow(row, end)
+                        && bars.open[b] == view.open(row)
+                        && bars.close[b] == view.close(end - 1);
+                row = end;
+            }
+            correct &= row == rows;
+            StdOut.printf("%11d  %5d  %4d  %12.1f%n", rows,
+                          level(rows, width), bars.count, micros);
+        }
+        StdOut.println("bars match the range index: " + correct);
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ParallelCSVReader.java
+This class's purpose is to read .csv files of several GB on every core at
+once. The file is split into chunks of bytes that each start right after
+a newline, so every chunk holds whole rows, and each chunk is memory
+mapped and parsed by its own CSVRowParser on a thread of a pool.
+
+The columns are allocated once for the whole file: the newlines of each
+chunk are counted first (a fast scan), which bounds the rows it can hold,
+so each chunk writes its rows straight into its own region of the shared
+columns. Regions are then moved together in file order, leaving out the
+room of the header, blank lines and malformed rows. Malformed rows never
+stop the parse; they are returned with their line numbers in the file
+ */
+// importing file, nio, collection and concurrency libraries
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelCSVReader {
+    // size of the piece of a mapped chunk copied out for the parser
+    private static final int BUFFER_SIZE = 1 << 16;
+    // chunks are at least this large, so small files are not split up
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    // and at most this large, well within what one mapping can hold
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+    // chunks per thread, so a thread that finishes early takes another
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // writes the rows of one chunk into rows [start, start + capacity) of
+    // the shared columns
+    private static final class Region implements PriceSeries.RowSink {
+        private final long[] dates;
+        private final double[] open;
+        private final double[] high;
+        private final double[] low;
+        private final double[] close;
+        private final double[] adjClose;
+        private final long[] volume;
+        private final int start;
+        private int size = 0;
+        // stays true while every added date is later than the previous one
+        private boolean sorted = true;
+
+        private Region(long[] dates, double[] open, double[] high,
+                       double[] low, double[] close, double[] adjClose,
+                       long[] volume, int start) {
+            this.dates = dates;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.adjClose = adjClose;
+            this.volume = volume;
+            this.start = start;
+        }
+
+        @Override
+        public void add(long date, double o, double h, double l, double c,
+                        double adj, long vol) {
+            int i = start + size;
+            if (size > 0 && date < dates[i - 1]) sorted = false;
+            dates[i] = date;
+            open[i] = o;
+            high[i] = h;
+            low[i] = l;
+            close[i] = c;
+            adjClose[i] = adj;
+            volume[i] = vol;
+            size++;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // reads a csv stock file on threads threads and returns its rows as a
+    // PriceSeries like CSVReader.parseSeries; every row that cannot be read
+    // is added to malformed (in line order) instead of stopping the parse
+    public static PriceSeries parseSeries(String path, int threads,
+                                          List<CSVRowParser.Malformed> malformed) {
+        Profiler.Stage stage = Profiler.start("parse parallel", path);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(Paths.get(path),
+                                                    StandardOpenOption.READ)) {
+            long[] bounds = boundaries(channel, threads);
+            int chunks = bounds.length - 1;
+
+            // first pass: newlines bound the rows of every chunk
+            List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+            for (int c = 0; c < chunks; c++) {
+                long from = bounds[c];
+                long to = bounds[c + 1];
+                counts.add(() -> countRows(channel, from, to));
+            }
+            int[] starts = new int[chunks + 1];
+            List<Future<Integer>> counted = pool.invokeAll(counts);
+            for (int c = 0; c < chunks; c++) {
+                long end = (long) starts[c] + counted.get(c).get();
+                if (end > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException(path + " has too many "
+                                                               + "rows for one "
+                                                               + "series");
+                }
+                starts[c + 1] = (int) end;
+            }
+            int capacity = starts[chunks];
+            long[] dates = new long[capacity];
+            double[] open = new double[capacity];
+            double[] high = new double[capacity];
+            double[] low = new double[capacity];
+            double[] close = new double[capacity];
+            double[] adjClose = new double[capacity];
+            long[] volume = new long[capacity];
+
+            // second pass: every chunk parses into its own region
+            Region[] regions = new Region[chunks];
+            List<List<CSVRowParser.Malformed>> bad =
+                    new ArrayList<List<CSVRowParser.Malformed>>();
+            List<Callable<Long>> parses = new ArrayList<Callable<Long>>();
+            for (int c = 0; c < chunks; c++) {
+                regions[c] = new Region(dates, open, high, low, close,
+                                        adjClose, volume, starts[c]);
+                List<CSVRowParser.Malformed> chunkBad =
+                        new ArrayList<CSVRowParser.Malformed>();
+                bad.add(chunkBad);
+                CSVRowParser parser = new CSVRowParser(regions[c], c == 0,
+                                                       chunkBad);
+                long from = bounds[c];
+                long to = bounds[c + 1];
+                parses.add(() -> parse(channel, from, to, parser));
+            }
+            List<Future<Long>> parsed = pool.invokeAll(parses);
+
+            // moves the regions together in file order and numbers the
+            // malformed rows by their line in the whole file
+            int size = 0;
+            long linesBefore = 0;
+            boolean sorted = true;
+            for (int c = 0; c < chunks; c++) {
+                long lines = parsed.get(c).get();
+                for (CSVRowParser.Malformed row : bad.get(c)) {
+                    malformed.add(new CSVRowParser.Malformed(
+                            linesBefore + row.line, row.reason));
+                }
+                linesBefore += lines;
+                Region region = regions[c];
+                int rows = region.size();
+                if (rows == 0) continue;
+                sorted &= region.sorted
+                        && (size == 0 || dates[region.start] >= dates[size - 1]);
+                if (region.start != size) {
+                    System.arraycopy(dates, region.start, dates, size, rows);
+                    System.arraycopy(open, region.start, open, size, rows);
+                    System.arraycopy(high, region.start, high, size, rows);
+                    System.arraycopy(low, region.start, low, size, rows);
+                    System.arraycopy(close, region.start, close, size, rows);
+                    System.arraycopy(adjClose, region.start, adjClose, size,
+                                     rows);
+                    System.arraycopy(volume, region.start, volume, size, rows);
+                }
+                size += rows;
+            }
+            if (size == 0) {
+                throw new RuntimeException("Parser did not find any contents in "
+                                                   + ".csv file. Double-check the "
+                                                   + ".csv file path and contents.");
+            }
+            PriceSeries series = PriceSeries.fromColumns(
+                    dates, open, high, low, close, adjClose, volume, size);
+            if (!sorted) series = sortedCopy(series);
+            Profiler.end(stage, size);
+            return series;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("cannot read " + path, e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("parsing " + path + " interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("parsing " + path + " failed",
+                                       e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // returns the byte offsets the chunks of the file start at, plus the
+    // file size at the end; every chunk but the first starts right after
+    // a newline
+    private static long[] boundaries(FileChannel channel, int threads)
+            throws IOException {
+        long size = channel.size();
+        long chunkBytes = Math.max(MIN_CHUNK_BYTES,
+                                   size / ((long) threads * CHUNKS_PER_THREAD));
+        chunkBytes = Math.min(chunkBytes, MAX_CHUNK_BYTES);
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long next = chunkBytes;
+        while (next < size) {
+            // moves the boundary to just after the next newline
+            long newline = -1;
+            for (long position = next; newline < 0 && position < size; ) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        newline = position + i;
+                        break;
+                    }
+                }
+                position += read;
+            }
+            if (newline < 0 || newline + 1 >= size) break;
+            bounds.add(newline + 1);
+            next = newline + 1 + chunkBytes;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    // returns the most rows bytes [from, to) can hold: one per newline,
+    // plus one for a last line without a newline
+    private static int countRows(FileChannel channel, long from, long to)
+            throws IOException {
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                                             from, to - from);
+        int rows = 0;
+        int length = chunk.limit();
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(i) == '\n') rows++;
+        }
+        if (length > 0 && chunk.get(length - 1) != '\n') rows++;
+        return rows;
+    }
+
+    // parses bytes [from, to) of the file with parser; returns the number
+    // of lines they hold
+    private static long parse(FileChannel channel, long from, long to,
+                              CSVRowParser parser) throws IOException {
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                                             from, to - from);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (chunk.hasRemaining()) {
+            int length = Math.min(buffer.length, chunk.remaining());
+            chunk.get(buffer, 0, length);
+            parser.parse(buffer, 0, length);
+        }
+        // the last line of a chunk may lack its newline only at the end
+        // of the file
+        parser.finish();
+        return parser.lines();
+    }
+
+    // returns a copy of series with its rows in ascending date order, for
+    // the rare file whose rows are not
+    private static PriceSeries sortedCopy(PriceSeries series) {
+        PriceSeries.Builder builder = new PriceSeries.Builder();
+        for (int i = 0; i < series.size(); i++) {
+            builder.add(series.date(i), series.open(i), series.high(i),
+                        series.low(i), series.close(i), series.adjClose(i),
+                        series.volume(i));
+        }
+        return builder.build();
+    }
+
+    // writes a file of about bytes bytes of one minute rows (random walk
+    // prices); every malformedEvery-th row is damaged in turn by a Yahoo
+    // "null" row, a missing column, a value that is not a number and a
+    // date that does not exist (none if malformedEvery is 0). Returns the
+    // number of damaged rows
+    public static long writeTestFile(File file, long bytes, int malformedEvery)
+            throws IOException {
+        DateTimeFormatter format =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        LocalDateTime time = LocalDateTime.of(2000, 1, 3, 0, 0);
+        double price = 100.0;
+        long written = 0;
+        long damaged = 0;
+        StringBuilder line = new StringBuilder(96);
+        Random random = new Random(7);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file),
+                                                     1 << 20)) {
+            out.write("Date,Open,High,Low,Close,Adj Close,Volume\n");
+            for (long row = 1; written < bytes; row++) {
+                line.setLength(0);
+                String date = time.format(format);
+                time = time.plusMinutes(1);
+                if (malformedEvery > 0 && row % malformedEvery == 0) {
+                    long kind = (row / malformedEvery) % 4;
+                    if (kind == 3) {
+                        // month 13, which must not be read as any date
+                        line.append(date, 0, 5).append("13")
+                            .append(date, 7, date.length())
+                            .append(",1.0,2.0,0.5,1.5,1.5,100");
+                    }
+                    else {
+                        line.append(date);
+                        if (kind == 0) {
+                            line.append(",null,null,null,null,null,null");
+                        }
+                        else if (kind == 1) line.append(",1.0,2.0");
+                        else line.append(",1.0,abc,0.5,1.5,1.5,100");
+                    }
+                    damaged++;
+                }
+                else {
+                    double open = price;
+                    price = Math.max(1.0, price + random.nextGaussian() * 0.1);
+                    double high = Math.max(open, price) + 0.05;
+                    double low = Math.min(open, price) - 0.05;
+                    line.append(date).append(',')
+                        .append(Math.round(open * 1e4) / 1e4).append(',')
+                        .append(Math.round(high * 1e4) / 1e4).append(',')
+                        .append(Math.round(low * 1e4) / 1e4).append(',')
+                        .append(Math.round(price * 1e4) / 1e4).append(',')
+                        .append(Math.round(price * 1e4) / 1e4).append(',')
+                        .append(1000 + random.nextInt(1_000_000));
+                }
+                line.append('\n');
+                out.write(line.toString());
+                written += line.length();
+            }
+        }
+        return damaged;
+    }
+
+    // tests methods in ParallelCSVReader class: writes a file of the given
+    // size in GB with a damaged row every malformedEvery rows, parses it
+    // with 1 thread and then with every core, checks both give the same
+    // rows and malformed lines, and prints the speedup, e.g.
+    // java -Xmx6g ParallelCSVReader /tmp/big.csv 2 100000
+    public static void main(String[] args) throws IOException {
+        File file = new File(args[0]);
+        long bytes = (long) (Double.parseDouble(args[1]) * (1L << 30));
+        int malformedEvery = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        long start = System.nanoTime();
+        long damaged = writeTestFile(file, bytes, malformedEvery);
+        StdOut.printf("wrote %.2f GB with %d damaged rows in %.1f s%n",
+                      file.length() / (double) (1L << 30), damaged,
+                      (System.nanoTime() - start) / 1e9);
+
+        // every core first, so JIT warm up can only favor the one thread
+        // run and the speedup is not overstated
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<CSVRowParser.Malformed> parallelBad =
+                new ArrayList<CSVRowParser.Malformed>();
+        start = System.nanoTime();
+        PriceSeries parallel = parseSeries(file.getPath(), cores, parallelBad);
+        double parallelSeconds = (System.nanoTime() - start) / 1e9;
+        // rows are in date order
+        boolean sorted = true;
+        for (int i = 1; sorted && i < parallel.size(); i++) {
+            sorted = parallel.date(i) > parallel.date(i - 1);
+        }
+        // keeps a few rows to compare with, so both series need not fit
+        // in the heap at once
+        int size = parallel.size();
+        long lastDate = parallel.date(size - 1);
+        double middleClose = parallel.close(size / 2);
+        parallel = null;
+
+        List<CSVRowParser.Malformed> sequentialBad =
+                new ArrayList<CSVRowParser.Malformed>();
+        start = System.nanoTime();
+        PriceSeries sequential = parseSeries(file.getPath(), 1, sequentialBad);
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+        StdOut.printf("1 thread: %d rows, %d malformed in %.2f s (%.0f MB/s)%n",
+                      sequential.size(), sequentialBad.size(),
+                      sequentialSeconds, file.length() / 1e6 / sequentialSeconds);
+        StdOut.printf("%d threads: %d rows, %d malformed in %.2f s "
+                              + "(%.0f MB/s), speedup %.2fx%n",
+                      cores, size, parallelBad.size(), parallelSeconds,
+                      file.length() / 1e6 / parallelSeconds,
+                      sequentialSeconds / parallelSeconds);
+        boolean sameLines = parallelBad.size() == sequentialBad.size();
+        for (int i = 0; sameLines && i < parallelBad.size(); i++) {
+            sameLines = parallelBad.get(i).line == sequentialBad.get(i).line;
+        }
+        // damaged row r is on line r + 1, after the header
+        boolean rightLines = true;
+        for (CSVRowParser.Malformed row : parallelBad) {
+            rightLines &= (row.line - 1) % malformedEvery == 0;
+        }
+        StdOut.println("same rows: " + (sequential.size() == size
+                && sequential.date(size - 1) == lastDate
+                && sequential.close(size / 2) == middleClose)
+                               + ", same malformed lines: " + sameLines
+                               + ", in date order: " + sorted
+                               + ", all damaged rows reported: "
+                               + (parallelBad.size() == damaged && rightLines));
+        for (int i = 0; i < Math.min(4, parallelBad.size()); i++) {
+            StdOut.println("  " + parallelBad.get(i));
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+PriceSeries.java
+This class's purpose is to hold the stock data of a .csv file (date, open,
+high, low, close, adj close, volume) in parallel primitive columns so a
+file only has to be parsed once and can then be shared by the indicator,
+graphing and data classes
+ */
+// importing date libraries
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+public class PriceSeries {
+    // number of seconds in one day, daily rows are stored at midnight UTC
+    public static final long SECONDS_PER_DAY = 86400;
+
+    // parallel columns, index i of every column belongs to the same row
+    private final long[] dates;      // seconds since 1970-01-01 (UTC)
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] adjClose;
+    private final long[] volume;
+    // position of this series' first row in the columns (not 0 for a
+    // date range view made by slice or between) and number of rows
+    private final int offset;
+    private final int size;
+    // highest high / lowest low of any window, shared by a series and all
+    // of its views and built on the first query
+    private final RangeMinMax range;
+    // OHLC bars of every power of two rows, shared and built like range
+    private final OhlcPyramid pyramid;
+
+    // creates a series over all size rows of the columns
+    private PriceSeries(long[] dates, double[] open, double[] high,
+                        double[] low, double[] close, double[] adjClose,
+                        long[] volume, int size) {
+        this(dates, open, high, low, close, adjClose, volume, 0, size,
+             new RangeMinMax(high, low, size),
+             new OhlcPyramid(high, low, size));
+    }
+
+    // creates a view over rows [offset, offset + size) of the columns
+    private PriceSeries(long[] dates, double[] open, double[] high,
+                        double[] low, double[] close, double[] adjClose,
+                        long[] volume, int offset, int size,
+                        RangeMinMax range, OhlcPyramid pyramid) {
+        this.dates = dates;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.adjClose = adjClose;
+        this.volume = volume;
+        this.offset = offset;
+        this.size = size;
+        this.range = range;
+        this.pyramid = pyramid;
+    }
+
+    // given a file name of .csv stock data, reads the file once and returns
+    // the series holding all of its rows; the binary cache next to the
+    // file is used instead of parsing when it is up to date
+    public static PriceSeries load(String fileName) {
+        return ColumnFile.load(fileName);
+    }
+
+    // creates a series from columns read by ColumnFile; the arrays are
+    // used as is, not copied
+    static PriceSeries fromColumns(long[] dates, double[] open, double[] high,
+                                   double[] low, double[] close,
+                                   double[] adjClose, long[] volume,
+                                   int size) {
+        return new PriceSeries(dates, open, high, low, close, adjClose,
+                               volume, size);
+    }
+
+    // converts a yyyy-mm-dd date (or yyyy-mm-ddThh:mm[:ss] time) to seconds
+    // since 1970-01-01 UTC, the unit of the date column
+    public static long parseDate(String date) {
+        if (date.length() <= 10) {
+            return LocalDate.parse(date).toEpochDay() * SECONDS_PER_DAY;
+        }
+        return LocalDateTime.parse(date.replace(' ', 'T'))
+                            .toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // returns a view of rows [from, to) of this series; the view shares
+    // this series' columns, so nothing is copied
+    public PriceSeries slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("rows " + from + " to " + to
+                                                        + " of " + size);
+        }
+        return new PriceSeries(dates, open, high, low, close, adjClose,
+                               volume, offset + from, to - from, range,
+                               pyramid);
+    }
+
+    // returns a view of the rows dated from fromDate to toDate (both
+    // included, seconds since 1970-01-01) in O(log n) time, without copying
+    public PriceSeries between(long fromDate, long toDate) {
+        return slice(firstIndexAtOrAfter(fromDate),
+                     firstIndexAfter(toDate));
+    }
+
+    // returns a view of the last rows covering the given number of days
+    // before (and including) the last date, e.g. 182 for about 6 months
+    public PriceSeries lastDays(int days) {
+        if (size == 0) return this;
+        long last = date(size - 1);
+        return between(last - (days - 1) * SECONDS_PER_DAY, last);
+    }
+
+    // returns the first row whose date is at or after date (size() if
+    // there is none) by binary search over the sorted date column
+    public int firstIndexAtOrAfter(long date) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dates[offset + mid] < date) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // returns the first row whose date is after date (size() if there is
+    // none) by binary search over the sorted date column
+    public int firstIndexAfter(long date) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dates[offset + mid] <= date) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // returns the highest high of rows [from, to) in O(1) time (after the
+    // index is built once in O(n)), so zooming never rescans the rows
+    public double maxHigh(int from, int to) {
+        checkWindow(from, to);
+        return range.maxHigh(offset + from, offset + to);
+    }
+
+    // returns the lowest low of rows [from, to) in O(1) time
+    public double minLow(int from, int to) {
+        checkWindow(from, to);
+        return range.minLow(offset + from, offset + to);
+    }
+
+    // returns the OHLC pyramid of the columns (see OhlcPyramid), shared by
+    // this series and every view of it
+    public OhlcPyramid pyramid() {
+        return pyramid;
+    }
+
+    // throws an exception for a window that is empty or outside this series
+    private void checkWindow(int from, int to) {
+        if (from < 0 || to > size || from >= to) {
+            throw new IndexOutOfBoundsException("rows " + from + " to " + to
+                                                        + " of " + size);
+        }
+    }
+
+    // returns the number of rows (dates) in the series
+    public int size() {
+        return size;
+    }
+
+    // returns the date of row i in seconds since 1970-01-01 (UTC)
+    public long date(int i) {
+        return dates[offset + i];
+    }
+
+    // returns the open price of row i
+    public double open(int i) {
+        return open[offset + i];
+    }
+
+    // returns the high price of row i
+    public double high(int i) {
+        return high[offset + i];
+    }
+
+    // returns the low price of row i
+    public double low(int i) {
+        return low[offset + i];
+    }
+
+    // returns the close price of row i
+    public double close(int i) {
+        return close[offset + i];
+    }
+
+    // returns the adjusted close price of row i
+    public double adjClose(int i) {
+        return adjClose[offset + i];
+    }
+
+    // returns the traded volume of row i
+    public long volume(int i) {
+        return volume[offset + i];
+    }
+
+    // returns the date of row i formatted like the .csv file (yyyy-mm-dd
+    // for daily rows, yyyy-mm-ddThh:mm for intraday rows)
+    public String dateString(int i) {
+        long seconds = dates[offset + i];
+        if (seconds % SECONDS_PER_DAY == 0) {
+            return LocalDate.ofEpochDay(seconds / SECONDS_PER_DAY).toString();
+        }
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC)
+                            .toString();
+    }
+
+    // the column getters below return the backing arrays (not copies) so
+    // indicator computations can loop over primitives; this series' rows
+    // are entries [offset(), offset() + size()) and callers must not modify
+    // them
+
+    // returns the position of this series' first row in the columns
+    public int offset() {
+        return offset;
+    }
+
+    // returns the column of dates
+    public long[] dates() {
+        return dates;
+    }
+
+    // returns the column of open prices
+    public double[] opens() {
+        return open;
+    }
+
+    // returns the column of high prices
+    public double[] highs() {
+        return high;
+    }
+
+    // returns the column of low prices
+    public double[] lows() {
+        return low;
+    }
+
+    // returns the column of close prices
+    public double[] closes() {
+        return close;
+    }
+
+    // returns the column of adjusted close prices
+    public double[] adjCloses() {
+        return adjClose;
+    }
+
+    // returns the column of volumes
+    public long[] volumes() {
+        return volume;
+    }
+
+    // receives rows one at a time, such as from CSVRowParser
+    public interface RowSink {
+        // adds one row of stock data after the rows added so far
+        void add(long date, double o, double h, double l, double c,
+                 double adj, long vol);
+
+        // returns the number of rows added so far
+        int size();
+    }
+
+    // collects rows one at a time into growable primitive columns and
+    // builds the final PriceSeries
+    public static class Builder implements RowSink {
+        // starting capacity of each column, doubles whenever it is full
+        private static final int INITIAL_CAPACITY = 256;
+
+        private long[] dates = new long[INITIAL_CAPACITY];
+        private double[] open = new double[INITIAL_CAPACITY];
+        private double[] high = new double[INITIAL_CAPACITY];
+        private double[] low = new double[INITIAL_CAPACITY];
+        private double[] close = new double[INITIAL_CAPACITY];
+        private double[] adjClose = new double[INITIAL_CAPACITY];
+        private long[] volume = new long[INITIAL_CAPACITY];
+        private int size = 0;
+        // stays true while every added date is later than the previous one
+        private boolean sorted = true;
+
+        // appends one row of stock data to the end of the columns
+        @Override
+        public void add(long date, double o, double h, double l, double c,
+                        double adj, long vol) {
+            if (size == dates.length) grow();
+            if (size > 0 && date < dates[size - 1]) sorted = false;
+            dates[size] = date;
+            open[size] = o;
+            high[size] = h;
+            low[size] = l;
+            close[size] = c;
+            adjClose[size] = adj;
+            volume[size] = vol;
+            size++;
+        }
+
+        // returns the number of rows added so far
+        @Override
+        public int size() {
+            return size;
+        }
+
+        // doubles the capacity of every column
+        private void grow() {
+            int capacity = 2 * dates.length;
+            dates = Arrays.copyOf(dates, capacity);
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            adjClose = Arrays.copyOf(adjClose, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+        }
+
+        // returns the finished series; rows are put in ascending date order
+        // if the file was not already sorted. More rows can be added and
+        // build called again (as a followed file grows): the series share
+        // the columns, and rows an earlier series holds are never changed
+        public PriceSeries build() {
+            if (!sorted) sortByDate();
+            return new PriceSeries(dates, open, high, low, close, adjClose,
+                                   volume, size);
+        }
+
+        // reorders every column by ascending date (stable for equal dates)
+        private void sortByDate() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(dates[a], dates[b]));
+
+            long[] d = new long[size];
+            double[] o = new double[size];
+            double[] h = new double[size];
+            double[] l = new double[size];
+            double[] c = new double[size];
+            double[] adj = new double[size];
+            long[] vol = new long[size];
+            for (int i = 0; i < size; i++) {
+                int from = order[i];
+                d[i] = dates[from];
+                o[i] = open[from];
+                h[i] = high[from];
+                l[i] = low[from];
+                c[i] = close[from];
+                adj[i] = adjClose[from];
+                vol[i] = volume[from];
+            }
+            dates = d;
+            open = o;
+            high = h;
+            low = l;
+            close = c;
+            adjClose = adj;
+            volume = vol;
+            sorted = true;
+        }
+    }
+
+    // tests methods in PriceSeries class
+    public static void main(String[] args) {
+        // stores name of .csv stock data file from command line
+        String fileName = args[0];
+        PriceSeries series = PriceSeries.load(fileName);
+        // prints every row of the series to check all columns were read
+        for (int i = 0; i < series.size(); i++) {
+            StdOut.println(series.dateString(i) + " " + series.open(i) + " "
+                                   + series.high(i) + " " + series.low(i) + " "
+                                   + series.close(i) + " " + series.adjClose(i)
+                                   + " " + series.volume(i));
+        }
+        StdOut.println("number of rows in series: " + series.size());
+
+        // given a second, shorter file of the same stock, checks that the
+        // view of its date range holds the same prices, e.g.
+        // java PriceSeries TSLA-5YEARS.csv TSLA-6MONTHS.csv
+        // (only dates both files cover are compared, and not volumes, which
+        // the data provider revises after the fact)
+        if (args.length > 1) {
+            PriceSeries window = PriceSeries.load(args[1]);
+            window = window.between(series.date(0),
+                                    series.date(series.size() - 1));
+            PriceSeries view = series.between(
+                    window.date(0), window.date(window.size() - 1));
+            boolean same = view.size() == window.size();
+            for (int i = 0; same && i < view.size(); i++) {
+                same = view.date(i) == window.date(i)
+                        && view.open(i) == window.open(i)
+                        && view.high(i) == window.high(i)
+                        && view.low(i) == window.low(i)
+                        && view.close(i) == window.close(i);
+            }
+            StdOut.println("view " + view.dateString(0) + " to "
+                                   + view.dateString(view.size() - 1) + " at row "
+                                   + view.offset() + " matches " + args[1]
+                                   + ": " + same);
+        }
+    }
+}
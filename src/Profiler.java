@@ -0,0 +1,231 @@
+/*
+Profiler.java
+This class's purpose is to time the stages of making a chart (loading,
+parsing, each indicator, axis layout and each drawing layer) so a slow
+chart shows where its time went. Each stage records wall time, rows
+processed and bytes allocated by its thread (ThreadMXBean); totals per
+stage are printed as JSON by StockClient --profile. While profiling, each
+stage is also a JFR event (stock.Stage) that lines up with GC events in a
+flight recording (java -XX:StartFlightRecording ...).
+
+Profiling is off unless enable() is called: start then only reads one
+static boolean and returns null, and end returns at once for null, so
+the calls can stay in the code for good
+ */
+// importing management, JFR and collection libraries
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+public class Profiler {
+    // true once enable() was called
+    private static volatile boolean enabled = false;
+    // time profiling was enabled, for the total of the report
+    private static long enabledAt;
+    // reports allocated bytes per thread on HotSpot JVMs; looked up by
+    // enable(), so a run that never profiles never touches the thread
+    // bean or turns on allocation counting. null until then and on other
+    // JVMs
+    private static volatile com.sun.management.ThreadMXBean threads;
+    // totals per stage name and detail, in name order; guarded by itself
+    private static final Map<String, Totals> TOTALS =
+            new TreeMap<String, Totals>();
+
+    // a stage that has started; returned by start and passed to end
+    public static final class Stage {
+        private final String name;
+        private final String detail;
+        private final int period;
+        private final int[] periods;
+        private final long startNanos;
+        private final long startBytes;
+        private final StageEvent event;
+
+        private Stage(String name, String detail, int period, int[] periods) {
+            this.name = name;
+            this.detail = detail;
+            this.period = period;
+            this.periods = periods;
+            this.event = new StageEvent();
+            event.begin();
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    // JFR event of one stage
+    @Name("stock.Stage")
+    @Label("Stock Chart Stage")
+    @Category("Stock Visualization")
+    static class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Detail")
+        String detail;
+        @Label("Rows")
+        long rows;
+        @Label("Allocated Bytes")
+        long allocated;
+    }
+
+    // totals of every run of one stage
+    private static final class Totals {
+        private long count;
+        private long nanos;
+        private long maxNanos;
+        private long rows;
+        private long bytes;
+    }
+
+    // returns the HotSpot thread bean if this JVM has one with allocation
+    // counting turned on
+    private static com.sun.management.ThreadMXBean threads() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean hotspot =
+                (com.sun.management.ThreadMXBean) bean;
+        if (!hotspot.isThreadAllocatedMemorySupported()) return null;
+        hotspot.setThreadAllocatedMemoryEnabled(true);
+        return hotspot;
+    }
+
+    // returns the bytes allocated by the current thread so far, -1 if the
+    // JVM cannot tell
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = threads;
+        if (bean == null) return -1;
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // turns profiling on for the rest of the run
+    public static void enable() {
+        if (threads == null) threads = threads();
+        enabledAt = System.nanoTime();
+        enabled = true;
+    }
+
+    // returns true while profiling is on
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // starts timing a stage, e.g. start("draw", "candlesticks"); returns
+    // null (and does nothing else) when profiling is off
+    public static Stage start(String name, String detail) {
+        if (!enabled) return null;
+        return new Stage(name, detail, -1, null);
+    }
+
+    // starts timing a stage for one time period, e.g. an SMA of 20 days
+    public static Stage start(String name, String detail, int period) {
+        if (!enabled) return null;
+        return new Stage(name, detail, period, null);
+    }
+
+    // starts timing a stage for several time periods computed together
+    public static Stage start(String name, String detail, int[] periods) {
+        if (!enabled) return null;
+        return new Stage(name, detail, -1, periods);
+    }
+
+    // ends a stage that processed rows rows and adds it to the totals
+    public static void end(Stage stage, long rows) {
+        if (stage == null) return;
+        long nanos = System.nanoTime() - stage.startNanos;
+        long bytes = stage.startBytes < 0 ? 0
+                : allocatedBytes() - stage.startBytes;
+        String detail = stage.detail;
+        if (stage.period >= 0) detail += " " + stage.period;
+        if (stage.periods != null) {
+            detail += " " + Arrays.toString(stage.periods);
+        }
+        StageEvent event = stage.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage.name;
+            event.detail = detail;
+            event.rows = rows;
+            event.allocated = bytes;
+            event.commit();
+        }
+        String key = stage.name + "\t" + detail;
+        synchronized (TOTALS) {
+            Totals totals = TOTALS.get(key);
+            if (totals == null) {
+                totals = new Totals();
+                TOTALS.put(key, totals);
+            }
+            totals.count++;
+            totals.nanos += nanos;
+            totals.maxNanos = Math.max(totals.maxNanos, nanos);
+            totals.rows += rows;
+            totals.bytes += bytes;
+        }
+    }
+
+    // returns the totals of every stage as JSON:
+    // {"totalMillis": ..., "allocationCounted": true|false, "stages": [
+    //  {"stage": "parse", "detail": "...", "count": 1, "millis": ...,
+    //   "maxMillis": ..., "rows": ..., "allocatedBytes": ...}, ...]}
+    public static String report() {
+        StringBuilder json = new StringBuilder();
+        double total = enabled ? (System.nanoTime() - enabledAt) / 1e6 : 0.0;
+        json.append(String.format("{\"totalMillis\": %.3f, ", total));
+        json.append("\"allocationCounted\": ").append(threads != null);
+        json.append(", \"stages\": [");
+        List<String> lines = new ArrayList<String>();
+        synchronized (TOTALS) {
+            for (Map.Entry<String, Totals> entry : TOTALS.entrySet()) {
+                String[] key = entry.getKey().split("\t", 2);
+                Totals totals = entry.getValue();
+                lines.add(String.format(
+                        "{\"stage\": \"%s\", \"detail\": \"%s\", \"count\": "
+                                + "%d, \"millis\": %.3f, \"maxMillis\": %.3f, "
+                                + "\"rows\": %d, \"allocatedBytes\": %d}",
+                        escape(key[0]), escape(key[1]), totals.count,
+                        totals.nanos / 1e6, totals.maxNanos / 1e6,
+                        totals.rows, totals.bytes));
+            }
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            json.append(i == 0 ? "\n  " : ",\n  ").append(lines.get(i));
+        }
+        return json.append("\n]}").toString();
+    }
+
+    // escapes backslashes and quotes (e.g. in Windows file names) for JSON
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // tests methods in Profiler class: measures the cost of a start/end
+    // pair while profiling is off, then profiles a chart of a file drawn
+    // offscreen and prints the report, e.g. java Profiler TSLA-5YEARS.csv 20
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int CALLS = 10_000_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            end(start("indicator", "sma", i), i);
+        }
+        StdOut.printf("disabled start/end: %.2f ns per stage%n",
+                      (System.nanoTime() - start) / (double) CALLS);
+
+        enable();
+        PriceSeries series = PriceSeries.load(args[0]);
+        int[] periods = StockClient.parsePeriods(new String[] { args[1] }, 0);
+        ChartExporter.render(series, periods,
+                             new String[] { "bollinger", "rsi" }, 1200, 850)
+                     .dispose();
+        StdOut.println(report());
+    }
+}
@@ -0,0 +1,196 @@
+/*
+RangeMinMax.java
+This class's purpose is to answer "what is the highest high and lowest low
+between row a and row b" for any window of a stock series in (nearly)
+constant time, so the chart's y axis can be fitted to the visible window
+on every zoom or pan without scanning the data again.
+
+Rows are grouped into blocks of BLOCK_SIZE; a sparse table stores the max
+high and min low of every run of 2^k blocks. A query combines two
+overlapping runs of whole blocks with a scan of the partial blocks at
+each end, so it touches at most 2 * BLOCK_SIZE rows. Keeping the table
+over blocks instead of rows costs about 2 / BLOCK_SIZE * log2(n / BLOCK_SIZE)
+extra doubles per row, instead of 2 * log2(n) for a plain sparse table
+ */
+// importing Random library
+
+import java.util.Random;
+
+public class RangeMinMax {
+    // rows per block; queries scan at most two partial blocks
+    private static final int BLOCK_SIZE = 32;
+
+    private final double[] high;
+    private final double[] low;
+    // number of rows covered, starting at index 0 of the columns
+    private final int size;
+    // maxHigh[k][b] is the highest high of blocks [b, b + 2^k), minLow[k][b]
+    // the lowest low of the same blocks; null until first used (volatile so
+    // a table built by one thread is seen complete by the others)
+    private volatile double[][] maxHigh;
+    private volatile double[][] minLow;
+
+    // creates the index over rows [0, size) of the high and low columns;
+    // the table is only built by the first query
+    public RangeMinMax(double[] high, double[] low, int size) {
+        this.high = high;
+        this.low = low;
+        this.size = size;
+    }
+
+    // builds the sparse table in O(n) time for the block level plus
+    // O(n / BLOCK_SIZE * log(n / BLOCK_SIZE)) for the levels above it;
+    // synchronized so views of one series shared by threads build it once
+    private synchronized void build() {
+        if (maxHigh != null) return;
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int levels = 1;
+        while ((1 << levels) <= blocks) levels++;
+        double[][] highs = new double[levels][];
+        double[][] lows = new double[levels][];
+
+        // level 0: one value per block
+        highs[0] = new double[blocks];
+        lows[0] = new double[blocks];
+        for (int b = 0; b < blocks; b++) {
+            int start = b * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, size);
+            highs[0][b] = maxOf(high, start, end);
+            lows[0][b] = minOf(low, start, end);
+        }
+        // level k combines two runs of 2^(k-1) blocks
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int count = blocks - (1 << k) + 1;
+            highs[k] = new double[count];
+            lows[k] = new double[count];
+            for (int b = 0; b < count; b++) {
+                highs[k][b] = Math.max(highs[k - 1][b], highs[k - 1][b + half]);
+                lows[k][b] = Math.min(lows[k - 1][b], lows[k - 1][b + half]);
+            }
+        }
+        minLow = lows;
+        maxHigh = highs;
+    }
+
+    // returns about how many bytes of heap the table of an index over
+    // size rows takes once built, the same arrays build() allocates
+    public static long tableBytes(int size) {
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long bytes = 0;
+        int levels = 1;
+        while ((1 << levels) <= blocks) levels++;
+        for (int k = 0; k < levels; k++) {
+            long count = blocks - (1L << k) + 1;
+            // one high and one low array of count values
+            bytes += 2 * (16 + 8 * count);
+        }
+        // the two arrays of levels
+        return bytes + 2 * (16 + 8L * levels);
+    }
+
+    // returns the highest high of rows [from, to)
+    public double maxHigh(int from, int to) {
+        checkRange(from, to);
+        if (maxHigh == null) build();
+        int firstBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int lastBlock = to / BLOCK_SIZE;
+        // window lies inside one or two blocks, no whole block to look up
+        if (firstBlock >= lastBlock) return maxOf(high, from, to);
+        double highest = Math.max(maxOf(high, from, firstBlock * BLOCK_SIZE),
+                                  maxOf(high, lastBlock * BLOCK_SIZE, to));
+        int k = log2(lastBlock - firstBlock);
+        highest = Math.max(highest, maxHigh[k][firstBlock]);
+        return Math.max(highest, maxHigh[k][lastBlock - (1 << k)]);
+    }
+
+    // returns the lowest low of rows [from, to)
+    public double minLow(int from, int to) {
+        checkRange(from, to);
+        if (minLow == null) build();
+        int firstBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int lastBlock = to / BLOCK_SIZE;
+        if (firstBlock >= lastBlock) return minOf(low, from, to);
+        double lowest = Math.min(minOf(low, from, firstBlock * BLOCK_SIZE),
+                                 minOf(low, lastBlock * BLOCK_SIZE, to));
+        int k = log2(lastBlock - firstBlock);
+        lowest = Math.min(lowest, minLow[k][firstBlock]);
+        return Math.min(lowest, minLow[k][lastBlock - (1 << k)]);
+    }
+
+    // throws an exception for an empty window or one outside the rows
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > size || from >= to) {
+            throw new IndexOutOfBoundsException("rows " + from + " to " + to
+                                                        + " of " + size);
+        }
+    }
+
+    // returns the largest of values[from, to), -infinity if empty
+    private static double maxOf(double[] values, int from, int to) {
+        double highest = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            if (values[i] > highest) highest = values[i];
+        }
+        return highest;
+    }
+
+    // returns the smallest of values[from, to), +infinity if empty
+    private static double minOf(double[] values, int from, int to) {
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            if (values[i] < lowest) lowest = values[i];
+        }
+        return lowest;
+    }
+
+    // returns floor(log2(n)) for n > 0
+    private static int log2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+
+    // tests methods in RangeMinMax class: compares random window queries
+    // against scanning the window, then times queries against scans, e.g.
+    // java RangeMinMax TSLA-5YEARS.csv 100000
+    public static void main(String[] args) {
+        PriceSeries series = PriceSeries.load(args[0]);
+        int queries = Integer.parseInt(args[1]);
+        int size = series.size();
+        RangeMinMax index = new RangeMinMax(series.highs(), series.lows(),
+                                            size);
+        Random random = new Random(42);
+        int[] from = new int[queries];
+        int[] to = new int[queries];
+        for (int q = 0; q < queries; q++) {
+            int a = random.nextInt(size);
+            int b = random.nextInt(size);
+            from[q] = Math.min(a, b);
+            to[q] = Math.max(a, b) + 1;
+        }
+
+        boolean same = true;
+        long start = System.nanoTime();
+        double indexTotal = 0.0;
+        for (int q = 0; q < queries; q++) {
+            indexTotal += index.maxHigh(from[q], to[q])
+                    - index.minLow(from[q], to[q]);
+        }
+        long indexTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        double scanTotal = 0.0;
+        for (int q = 0; q < queries; q++) {
+            double highest = maxOf(series.highs(), from[q], to[q]);
+            double lowest = minOf(series.lows(), from[q], to[q]);
+            same = same && highest == index.maxHigh(from[q], to[q])
+                    && lowest == index.minLow(from[q], to[q]);
+            scanTotal += highest - lowest;
+        }
+        long scanTime = System.nanoTime() - start;
+        StdOut.println(queries + " windows over " + size + " rows, index "
+                               + "matches scan: " + (same
+                && indexTotal == scanTotal));
+        StdOut.printf("index: %.1f ns/query, scan: %.1f ns/query%n",
+                      indexTime / (double) queries,
+                      scanTime / (double) queries);
+    }
+}
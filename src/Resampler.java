@@ -0,0 +1,192 @@
+/*
+Resampler.java
+This class's purpose is to turn fine bars (such as 1 minute rows) into
+coarser ones (5 minutes, 1 hour, 1 day, 1 week, ...) in a single pass, so
+one fine grained file can be charted and analyzed at any timeframe
+without keeping a separate .csv file per timeframe. Rows are aggregated
+as they arrive: first open, highest high, lowest low, last close and adj
+close, and total volume of every bucket. A bucket is dated by its start;
+days start at midnight UTC and weeks on Monday.
+
+Resampler is a PriceSeries.Builder, so it can be handed to the .csv
+parser (CSVReader.parseSeries(path, resampler)) and the fine rows are
+never stored, or run over a series that is already loaded (resample)
+ */
+// importing regex library
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Resampler extends PriceSeries.Builder {
+    // timeframes look like 5m, 1h, 1d or 1w
+    private static final Pattern TIMEFRAME = Pattern.compile("(\\d+)([mhdw])");
+    // 1970-01-01 was a Thursday, so Monday weeks start 4 days later
+    private static final long WEEK_ORIGIN = 4 * PriceSeries.SECONDS_PER_DAY;
+
+    // length of a bucket in seconds and the time the buckets are counted
+    // from (0, or a Monday for weeks)
+    private final long bucketSeconds;
+    private final long origin;
+
+    // the bucket currently being filled
+    private boolean open = false;
+    private long bucketStart;
+    private double bucketOpen;
+    private double bucketHigh;
+    private double bucketLow;
+    private double bucketClose;
+    private double bucketAdjClose;
+    private long bucketVolume;
+
+    // creates a resampler into buckets of bucketSeconds seconds counted from
+    // origin (seconds since 1970-01-01)
+    public Resampler(long bucketSeconds, long origin) {
+        if (bucketSeconds < 1) {
+            throw new IllegalArgumentException("bucket must be at least one "
+                                                       + "second");
+        }
+        this.bucketSeconds = bucketSeconds;
+        this.origin = origin;
+    }
+
+    // creates a resampler for a timeframe such as 5m, 1h, 1d or 2w
+    public static Resampler forTimeframe(String timeframe) {
+        Matcher matcher = TIMEFRAME.matcher(timeframe);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("timeframe " + timeframe
+                                                       + " is not like 5m, 1h, "
+                                                       + "1d or 1w");
+        }
+        long count = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "m":
+                return new Resampler(count * 60, 0);
+            case "h":
+                return new Resampler(count * 3600, 0);
+            case "d":
+                return new Resampler(count * PriceSeries.SECONDS_PER_DAY, 0);
+            default:
+                return new Resampler(count * 7 * PriceSeries.SECONDS_PER_DAY,
+                                     WEEK_ORIGIN);
+        }
+    }
+
+    // returns series aggregated into the given timeframe, in one pass over
+    // its primitive columns
+    public static PriceSeries resample(PriceSeries series, String timeframe) {
+        Resampler resampler = forTimeframe(timeframe);
+        Profiler.Stage stage = Profiler.start("resample", timeframe);
+        long[] dates = series.dates();
+        double[] open = series.opens();
+        double[] high = series.highs();
+        double[] low = series.lows();
+        double[] close = series.closes();
+        double[] adjClose = series.adjCloses();
+        long[] volume = series.volumes();
+        int end = series.offset() + series.size();
+        for (int i = series.offset(); i < end; i++) {
+            resampler.add(dates[i], open[i], high[i], low[i], close[i],
+                          adjClose[i], volume[i]);
+        }
+        PriceSeries bars = resampler.build();
+        Profiler.end(stage, series.size());
+        return bars;
+    }
+
+    // returns the start of the bucket holding date
+    private long bucketOf(long date) {
+        return Math.floorDiv(date - origin, bucketSeconds) * bucketSeconds
+                + origin;
+    }
+
+    // adds one fine row (in ascending date order) to its bucket, closing
+    // the previous bucket when the row starts a new one
+    @Override
+    public void add(long date, double o, double h, double l, double c,
+                    double adj, long vol) {
+        long start = bucketOf(date);
+        if (open && start == bucketStart) {
+            if (h > bucketHigh) bucketHigh = h;
+            if (l < bucketLow) bucketLow = l;
+            bucketClose = c;
+            bucketAdjClose = adj;
+            bucketVolume += vol;
+            return;
+        }
+        if (open && start < bucketStart) {
+            throw new IllegalArgumentException("rows must be in date order to "
+                                                       + "be resampled");
+        }
+        flush();
+        open = true;
+        bucketStart = start;
+        bucketOpen = o;
+        bucketHigh = h;
+        bucketLow = l;
+        bucketClose = c;
+        bucketAdjClose = adj;
+        bucketVolume = vol;
+    }
+
+    // adds the bucket being filled to the output rows
+    private void flush() {
+        if (!open) return;
+        super.add(bucketStart, bucketOpen, bucketHigh, bucketLow, bucketClose,
+                  bucketAdjClose, bucketVolume);
+        open = false;
+    }
+
+    // returns the number of buckets so far, including the one being filled
+    @Override
+    public int size() {
+        return super.size() + (open ? 1 : 0);
+    }
+
+    // returns the series of buckets, closing the last one
+    @Override
+    public PriceSeries build() {
+        flush();
+        return super.build();
+    }
+
+    // tests methods in Resampler class: resamples a file and checks every
+    // bucketing keeps the file's highest high, lowest low, first open,
+    // last close and total volume, e.g. java Resampler minutes.csv 5m 1h 1d 1w
+    public static void main(String[] args) {
+        String fileName = args[0];
+        long start = System.nanoTime();
+        PriceSeries series = CSVReader.parseSeries(fileName);
+        StdOut.printf("parsed %d rows in %.1f ms%n", series.size(),
+                      (System.nanoTime() - start) / 1e6);
+        int last = series.size() - 1;
+        long volume = 0;
+        for (int i = 0; i <= last; i++) volume += series.volume(i);
+
+        for (int a = 1; a < args.length; a++) {
+            start = System.nanoTime();
+            PriceSeries bars = resample(series, args[a]);
+            double millis = (System.nanoTime() - start) / 1e6;
+            int lastBar = bars.size() - 1;
+            long barVolume = 0;
+            for (int i = 0; i <= lastBar; i++) barVolume += bars.volume(i);
+            boolean kept = bars.maxHigh(0, bars.size())
+                    == series.maxHigh(0, series.size())
+                    && bars.minLow(0, bars.size())
+                    == series.minLow(0, series.size())
+                    && bars.open(0) == series.open(0)
+                    && bars.close(lastBar) == series.close(last)
+                    && barVolume == volume;
+            StdOut.printf("%s: %d bars (%s to %s) in %.1f ms, totals kept: %b%n",
+                          args[a], bars.size(), bars.dateString(0),
+                          bars.dateString(lastBar), millis, kept);
+        }
+
+        // resampling while parsing, without storing the fine rows
+        start = System.nanoTime();
+        PriceSeries streamed = CSVReader.parseSeries(
+                fileName, forTimeframe(args[args.length - 1]));
+        StdOut.printf("parsed straight into %d %s bars in %.1f ms%n",
+                      streamed.size(), args[args.length - 1],
+                      (System.nanoTime() - start) / 1e6);
+    }
+}
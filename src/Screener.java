@@ -0,0 +1,463 @@
+/*
+Screener.java
+This class's purpose is to look across a whole universe of tickers (an
+OffHeapStore) at once instead of one chart at a time: screens such as
+"closed above its 50 day SMA today after closing below it yesterday" or
+"EMA(12) above EMA(26)" are evaluated for every ticker in parallel with
+the Indicators kernels, reading the mapped columns in place, and the
+correlation matrix of the tickers' daily returns over a trailing window
+is computed in cache sized blocks.
+
+The correlation of two tickers is the dot product of their returns once
+each return series is centered and scaled to length 1, so the matrix is
+Z times Z transposed for the matrix Z of scaled returns (one row per
+ticker). It is computed tile by tile: a tile pairs BLOCK rows of Z with
+BLOCK other rows, both small enough to stay in the CPU cache while every
+pair in the tile is multiplied, and tiles are spread over the threads.
+Only tiles on or above the diagonal are computed since the matrix is
+symmetric, and it is kept as its upper triangle of floats.
+
+Returns are paired by date, not by row: the window's days are taken from
+a reference ticker (one whose last date is the one most tickers end on),
+and a ticker whose rows for those days are not exactly the same dates (a
+missing day, a halt, a later or earlier last date) is left out of the
+matrix and listed as skipped rather than correlated on other days
+ */
+// importing collection and concurrency libraries
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class Screener {
+    // rows of Z per tile side: 64 rows of a year of returns are 128 KB,
+    // so the two rows blocks of a tile fit in a typical L2 cache
+    private static final int BLOCK = 64;
+    // tickers per screening task
+    private static final int TICKERS_PER_TASK = 64;
+
+    // a test of one ticker's latest rows
+    public interface Screen {
+        boolean matches(MappedSeries series);
+    }
+
+    // returns a screen for tickers whose close crossed above their SMA of
+    // period days on the last day: at or below the SMA the day before and
+    // above it on the last day. Only the last period + 1 closes are read
+    public static Screen closeCrossedAboveSMA(int period) {
+        return series -> {
+            int size = series.size();
+            if (size < period + 1) return false;
+            // the SMAs ending on the last two days
+            double[] sma = new double[2];
+            Indicators.simpMovingAvgs(period, series.closes(),
+                                      size - period - 1, period + 1, sma);
+            return series.close(size - 2) <= sma[0]
+                    && series.close(size - 1) > sma[1];
+        };
+    }
+
+    // returns a screen for tickers whose EMA of fast days is above their
+    // EMA of slow days on the last day
+    public static Screen emaAbove(int fast, int slow) {
+        int[] periods = { fast, slow };
+        // one output buffer per thread, grown as needed, so screening
+        // thousands of tickers does not allocate thousands of arrays
+        ThreadLocal<double[][]> scratch =
+                ThreadLocal.withInitial(() -> new double[1][0]);
+        return series -> {
+            int size = series.size();
+            if (size < Math.max(fast, slow)) return false;
+            double[][] buffer = scratch.get();
+            if (buffer[0].length < 2 * size) buffer[0] = new double[2 * size];
+            double[] emas = buffer[0];
+            Indicators.movingAvgs(Indicators.Kind.EMA, periods,
+                                  series.closes(), 0, size, emas);
+            return emas[size - 1] > emas[2 * size - 1];
+        };
+    }
+
+    // returns a screen matching tickers that match every one of screens
+    public static Screen all(Screen... screens) {
+        return series -> {
+            for (Screen screen : screens) {
+                if (!screen.matches(series)) return false;
+            }
+            return true;
+        };
+    }
+
+    // returns the tickers of store that match screen, sorted, testing
+    // groups of tickers on the threads of pool
+    public static List<String> screen(OffHeapStore store, Screen screen,
+                                      ForkJoinPool pool) {
+        List<String> tickers = store.tickers();
+        List<Callable<List<String>>> tasks =
+                new ArrayList<Callable<List<String>>>();
+        for (int from = 0; from < tickers.size(); from += TICKERS_PER_TASK) {
+            List<String> group = tickers.subList(
+                    from, Math.min(from + TICKERS_PER_TASK, tickers.size()));
+            tasks.add(() -> {
+                List<String> matches = new ArrayList<String>();
+                for (String ticker : group) {
+                    if (screen.matches(store.get(ticker))) matches.add(ticker);
+                }
+                return matches;
+            });
+        }
+        List<String> matches = new ArrayList<String>();
+        // tasks are in ticker order, so the matches stay sorted
+        for (List<String> group : invokeAll(pool, tasks)) matches.addAll(group);
+        return matches;
+    }
+
+    // correlations of daily returns between tickers, as the upper triangle
+    // of a symmetric matrix
+    public static final class Correlations {
+        private final List<String> tickers;
+        private final List<String> skipped;
+        private final long[] days;
+        private final float[] upper;
+
+        private Correlations(List<String> tickers, List<String> skipped,
+                             long[] days, float[] upper) {
+            this.tickers = tickers;
+            this.skipped = skipped;
+            this.days = days;
+            this.upper = upper;
+        }
+
+        // returns the tickers, in the order of the matrix's rows
+        public List<String> tickers() {
+            return tickers;
+        }
+
+        // returns the tickers left out, each as "<ticker>: <reason>"
+        public List<String> skipped() {
+            return skipped;
+        }
+
+        // returns the dates of the daily returns correlated, oldest first
+        public long[] days() {
+            return days.clone();
+        }
+
+        // returns the number of tickers
+        public int size() {
+            return tickers.size();
+        }
+
+        // returns the correlation of the returns of tickers i and j
+        public double get(int i, int j) {
+            if (i > j) return get(j, i);
+            return upper[index(i, j, tickers.size())];
+        }
+    }
+
+    // returns the position of (i, j), i <= j, in the upper triangle of an
+    // n by n matrix stored row by row
+    private static int index(int i, int j, int n) {
+        return (int) ((long) i * n - (long) i * (i - 1) / 2 + (j - i));
+    }
+
+    // returns the window + 1 dates (the day before the first return, then
+    // the day of each return) that the returns are paired on: the rows
+    // ending daysBack rows before the last row of a reference ticker, the
+    // first (by name) of those whose last date is the one most tickers
+    // end on; only tickers with more than window + daysBack rows count.
+    // Returns null if no ticker has enough rows
+    static long[] referenceDates(OffHeapStore store, int window,
+                                 int daysBack) {
+        List<String> candidates = new ArrayList<String>();
+        Map<Long, Integer> lastDates = new HashMap<Long, Integer>();
+        for (String ticker : store.tickers()) {
+            MappedSeries series = store.get(ticker);
+            if (series.size() > window + daysBack) {
+                candidates.add(ticker);
+                lastDates.merge(series.date(series.size() - 1), 1,
+                                Integer::sum);
+            }
+        }
+        if (candidates.isEmpty()) return null;
+        // the most common last date, the later one on a tie
+        long common = Long.MIN_VALUE;
+        int most = 0;
+        for (Map.Entry<Long, Integer> entry : lastDates.entrySet()) {
+            if (entry.getValue() > most || (entry.getValue() == most
+                    && entry.getKey() > common)) {
+                common = entry.getKey();
+                most = entry.getValue();
+            }
+        }
+        for (String ticker : candidates) {
+            MappedSeries series = store.get(ticker);
+            if (series.date(series.size() - 1) != common) continue;
+            int first = series.size() - 1 - daysBack - window;
+            long[] dates = new long[window + 1];
+            for (int k = 0; k <= window; k++) dates[k] = series.date(first + k);
+            return dates;
+        }
+        return null;
+    }
+
+    // returns the first row of series of the given dates, if its rows
+    // from there hold exactly those dates, otherwise -1
+    private static int alignedRow(MappedSeries series, long[] dates) {
+        int first = series.firstIndexAtOrAfter(dates[0]);
+        if (first + dates.length > series.size()) return -1;
+        for (int k = 0; k < dates.length; k++) {
+            if (series.date(first + k) != dates[k]) return -1;
+        }
+        return first;
+    }
+
+    // returns the matrix of rows scaled returns (Z above) of every ticker
+    // of store whose rows hold exactly the given dates, over the returns
+    // of dates[1 ..] (dates[0] gives the close before the first return),
+    // as one flat row per ticker (tickers with constant prices get a row
+    // of zeros); the names of the tickers used are added to names and the
+    // others, with the reason, to skipped
+    static double[] scaledReturns(OffHeapStore store, long[] dates,
+                                  List<String> names, List<String> skipped) {
+        int window = dates.length - 1;
+        List<Integer> firstRows = new ArrayList<Integer>();
+        for (String ticker : store.tickers()) {
+            int first = alignedRow(store.get(ticker), dates);
+            if (first < 0) {
+                skipped.add(ticker + ": no row for every day of the window");
+                continue;
+            }
+            names.add(ticker);
+            firstRows.add(first);
+        }
+        double[] z = new double[names.size() * window];
+        for (int t = 0; t < names.size(); t++) {
+            MappedSeries series = store.get(names.get(t));
+            int first = firstRows.get(t);
+            int row = t * window;
+            double sum = 0.0;
+            for (int k = 0; k < window; k++) {
+                int day = first + 1 + k;
+                double previous = series.close(day - 1);
+                double r = previous == 0.0 ? 0.0
+                        : series.close(day) / previous - 1;
+                z[row + k] = r;
+                sum += r;
+            }
+            double mean = sum / window;
+            double squares = 0.0;
+            for (int k = 0; k < window; k++) {
+                double d = z[row + k] - mean;
+                z[row + k] = d;
+                squares += d * d;
+            }
+            double scale = squares == 0.0 ? 0.0 : 1.0 / Math.sqrt(squares);
+            for (int k = 0; k < window; k++) z[row + k] *= scale;
+        }
+        return z;
+    }
+
+    // returns the correlations of the daily returns of the tickers of
+    // store over window days ending daysBack rows before the reference
+    // ticker's last row (0 for the latest), so calling it for several
+    // daysBack gives a rolling matrix. Returns are paired by date; tickers
+    // without a row for every one of the window's days are left out and
+    // listed by Correlations.skipped
+    public static Correlations correlations(OffHeapStore store, int window,
+                                            int daysBack, ForkJoinPool pool) {
+        List<String> names = new ArrayList<String>();
+        List<String> skipped = new ArrayList<String>();
+        long[] dates = referenceDates(store, window, daysBack);
+        double[] z = dates == null ? new double[0]
+                : scaledReturns(store, dates, names, skipped);
+        long[] days = dates == null ? new long[0]
+                : Arrays.copyOfRange(dates, 1, dates.length);
+        int n = names.size();
+        float[] upper = new float[(int) ((long) n * (n + 1) / 2)];
+        List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+        for (int bi = 0; bi < n; bi += BLOCK) {
+            for (int bj = bi; bj < n; bj += BLOCK) {
+                int rowsFrom = bi;
+                int columnsFrom = bj;
+                tiles.add(() -> {
+                    tile(z, window, n, rowsFrom, columnsFrom, upper);
+                    return null;
+                });
+            }
+        }
+        invokeAll(pool, tiles);
+        return new Correlations(Collections.unmodifiableList(names),
+                                Collections.unmodifiableList(skipped), days,
+                                upper);
+    }
+
+    // computes the correlations of rows [rowsFrom, rowsFrom + BLOCK) with
+    // rows [columnsFrom, columnsFrom + BLOCK) of z into upper, skipping the
+    // pairs below the diagonal
+    private static void tile(double[] z, int window, int n, int rowsFrom,
+                             int columnsFrom, float[] upper) {
+        int rowsTo = Math.min(rowsFrom + BLOCK, n);
+        int columnsTo = Math.min(columnsFrom + BLOCK, n);
+        for (int i = rowsFrom; i < rowsTo; i++) {
+            int a = i * window;
+            int j = Math.max(i, columnsFrom);
+            // four columns at a time, so each value of row i is loaded
+            // once for four products
+            for (; j + 3 < columnsTo; j += 4) {
+                int b0 = j * window;
+                int b1 = b0 + window;
+                int b2 = b1 + window;
+                int b3 = b2 + window;
+                double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+                for (int k = 0; k < window; k++) {
+                    double x = z[a + k];
+                    s0 += x * z[b0 + k];
+                    s1 += x * z[b1 + k];
+                    s2 += x * z[b2 + k];
+                    s3 += x * z[b3 + k];
+                }
+                int at = index(i, j, n);
+                upper[at] = (float) s0;
+                upper[at + 1] = (float) s1;
+                upper[at + 2] = (float) s2;
+                upper[at + 3] = (float) s3;
+            }
+            for (; j < columnsTo; j++) {
+                int b = j * window;
+                double sum = 0.0;
+                for (int k = 0; k < window; k++) sum += z[a + k] * z[b + k];
+                upper[index(i, j, n)] = (float) sum;
+            }
+        }
+    }
+
+    // runs tasks on pool and returns their results in task order
+    private static <T> List<T> invokeAll(ForkJoinPool pool,
+                                         List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<T>(tasks.size());
+            for (Future<T> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("screening interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("screening failed", e.getCause());
+        }
+    }
+
+    // returns the largest difference between the blocked matrix and
+    // computing each correlation from scratch (Pearson's formula on the
+    // closes) for a sample of pairs; test for correlations
+    private static double maxCorrelationError(OffHeapStore store,
+                                              Correlations matrix,
+                                              int window) {
+        double error = 0.0;
+        int n = matrix.size();
+        for (int s = 0; s < 200; s++) {
+            int i = (int) ((long) s * 7919 % n);
+            int j = (int) ((long) s * 104729 % n);
+            MappedSeries x = store.get(matrix.tickers().get(i));
+            MappedSeries y = store.get(matrix.tickers().get(j));
+            long firstDay = matrix.days()[0];
+            int fx = x.firstIndexAtOrAfter(firstDay);
+            int fy = y.firstIndexAtOrAfter(firstDay);
+            double sx = 0, sy = 0, sxx = 0, syy = 0, sxy = 0;
+            for (int k = 0; k < window; k++) {
+                int dx = fx + k;
+                int dy = fy + k;
+                double rx = x.close(dx) / x.close(dx - 1) - 1;
+                double ry = y.close(dy) / y.close(dy - 1) - 1;
+                sx += rx;
+                sy += ry;
+                sxx += rx * rx;
+                syy += ry * ry;
+                sxy += rx * ry;
+            }
+            double pearson = (window * sxy - sx * sy)
+                    / Math.sqrt((window * sxx - sx * sx)
+                                        * (window * syy - sy * sy));
+            error = Math.max(error, Math.abs(pearson - matrix.get(i, j)));
+        }
+        return error;
+    }
+
+    // tests methods in Screener class on a synthetic universe (written if
+    // the directory has no .csv files yet): runs both screens and the
+    // correlation matrix with 1, 2, 4, ... threads up to the number of
+    // cores and prints the time of each, e.g.
+    // java Screener universe 5000 500 250
+    // (5000 tickers of 500 days, correlations over 250 daily returns)
+    public static void main(String[] args) throws Exception {
+        File directory = new File(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int rows = Integer.parseInt(args[2]);
+        int window = Integer.parseInt(args[3]);
+        if (!directory.isDirectory()
+                || BatchAnalysis.listCSVFiles(directory).length == 0) {
+            SyntheticTickers.write(directory, count, rows, 42);
+        }
+        long start = System.nanoTime();
+        OffHeapStore store = OffHeapStore.open(directory);
+        StdOut.printf("opened %d tickers in %.1f s%n", store.size(),
+                      (System.nanoTime() - start) / 1e9);
+        Screen crossed = closeCrossedAboveSMA(50);
+        Screen trending = emaAbove(12, 26);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        StdOut.println("threads  crossed SMA50 ms  EMA12>EMA26 ms  "
+                               + "correlations ms");
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+        List<String> crossedTickers = null;
+        List<String> trendingTickers = null;
+        Correlations matrix = null;
+        for (int threads : threadCounts) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                // first round warms up the JIT and page cache
+                for (int round = 0; round < 2; round++) {
+                    start = System.nanoTime();
+                    crossedTickers = screen(store, crossed, pool);
+                    double crossedMillis = (System.nanoTime() - start) / 1e6;
+                    start = System.nanoTime();
+                    trendingTickers = screen(store, trending, pool);
+                    double trendingMillis = (System.nanoTime() - start) / 1e6;
+                    start = System.nanoTime();
+                    matrix = correlations(store, window, 0, pool);
+                    double matrixMillis = (System.nanoTime() - start) / 1e6;
+                    if (round == 1) {
+                        StdOut.printf("%7d  %16.1f  %14.1f  %15.1f%n", threads,
+                                      crossedMillis, trendingMillis,
+                                      matrixMillis);
+                    }
+                }
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+        StdOut.printf("%d crossed above SMA50, %d with EMA12 > EMA26, "
+                              + "%d x %d correlations%n",
+                      crossedTickers.size(), trendingTickers.size(),
+                      matrix.size(), matrix.size());
+        StdOut.printf("max correlation error: %.2e, %d tickers skipped%n",
+                      maxCorrelationError(store, matrix, window),
+                      matrix.skipped().size());
+    }
+}
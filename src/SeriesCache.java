@@ -0,0 +1,359 @@
+/*
+SeriesCache.java
+This class's purpose is to keep recently used series and indicators in
+memory for a long running process (such as a chart server) that is asked
+for the same tickers and periods again and again, so they are not read
+from disk or computed again. Parsed series are keyed by (file, last
+modified time), so a changed file is read again, and indicators by (file,
+last modified time, indicator, period). The cache is bounded by the total
+bytes of what it holds, not by the number of entries: the least recently
+used entries are evicted once the bound is passed. Every method can be
+called from many threads at once; a value several threads ask for at the
+same time is only loaded once
+ */
+// importing file, collection and concurrency libraries
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+public class SeriesCache {
+    // bound of the shared cache, 256 MB unless set with
+    // -Dseries.cache.maxBytes=<bytes>
+    private static final long SHARED_MAX_BYTES =
+            Long.getLong("series.cache.maxBytes", 256L << 20);
+    // rough size of an object header plus its fields, and of an array header
+    private static final long OBJECT_BYTES = 64;
+    private static final long ARRAY_BYTES = 16;
+
+    // cache used by the methods that take a file name
+    private static volatile SeriesCache shared;
+
+    // key of an entry: indicator is null for the parsed series itself
+    private static final class Key {
+        private final String file;
+        private final long modified;
+        private final String indicator;
+        private final int period;
+
+        private Key(String file, long modified, String indicator, int period) {
+            this.file = file;
+            this.modified = modified;
+            this.indicator = indicator;
+            this.period = period;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key that = (Key) other;
+            return file.equals(that.file) && modified == that.modified
+                    && period == that.period
+                    && (indicator == null ? that.indicator == null
+                    : indicator.equals(that.indicator));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = file.hashCode();
+            hash = 31 * hash + Long.hashCode(modified);
+            hash = 31 * hash + (indicator == null ? 0 : indicator.hashCode());
+            return 31 * hash + period;
+        }
+    }
+
+    // a cached value and the bytes it was counted as
+    private static final class Entry {
+        private final Object value;
+        private final long bytes;
+
+        private Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long maxBytes;
+    // entries in access order, least recently used first; guarded by itself
+    private final LinkedHashMap<Key, Entry> entries =
+            new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    // values being loaded right now, so other threads wait for them
+    // instead of loading them again
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> loading =
+            new ConcurrentHashMap<Key, CompletableFuture<Object>>();
+    // counters, guarded by entries
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    // creates a cache holding at most maxBytes bytes of series and
+    // indicators
+    public SeriesCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("cache size must not be "
+                                                       + "negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    // returns the cache shared by the whole process
+    public static SeriesCache shared() {
+        SeriesCache cache = shared;
+        if (cache == null) {
+            synchronized (SeriesCache.class) {
+                if (shared == null) shared = new SeriesCache(SHARED_MAX_BYTES);
+                cache = shared;
+            }
+        }
+        return cache;
+    }
+
+    // returns the series of a .csv file, loading it (see PriceSeries.load)
+    // only if it is not cached for the file's current modified time
+    public PriceSeries series(String fileName) {
+        Key key = seriesKey(fileName);
+        return (PriceSeries) get(key, k -> PriceSeries.load(fileName));
+    }
+
+    // returns an indicator of a .csv file computed by compute from its
+    // series, computing it only if it is not cached for this file, name and
+    // period; the array is shared with other callers and must not be
+    // modified
+    public double[] indicator(String fileName, String name, int period,
+                              Function<PriceSeries, double[]> compute) {
+        Key file = seriesKey(fileName);
+        Key key = new Key(file.file, file.modified, name, period);
+        return (double[]) get(key, k -> compute.apply(series(fileName)));
+    }
+
+    // returns the SMAs of a .csv file like Indicators.simpMovingAvgs
+    public double[] simpMovingAvgs(String fileName, int period) {
+        return indicator(fileName, "sma", period,
+                         series -> Indicators.simpMovingAvgs(period, series));
+    }
+
+    // returns the moving averages of one period of a .csv file like
+    // Indicators.movingAvgs (one value per day, NaN before the first)
+    public double[] movingAvgs(String fileName, Indicators.Kind kind,
+                               int period) {
+        return indicator(fileName, kind.name().toLowerCase() + "-batch",
+                         period, series -> Indicators.movingAvgs(
+                        kind, new int[] { period }, series));
+    }
+
+    // returns the key of a file's series: its absolute path and current
+    // last modified time
+    private static Key seriesKey(String fileName) {
+        Path path = Paths.get(fileName).toAbsolutePath().normalize();
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            return new Key(path.toString(), modified, null, 0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("cannot read " + fileName, e);
+        }
+    }
+
+    // returns the value of key, loading it with loader on a miss
+    private Object get(Key key, Function<Key, Object> loader) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.value;
+            }
+            misses++;
+        }
+        CompletableFuture<Object> mine = new CompletableFuture<Object>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, mine);
+        if (running != null) {
+            // another thread is loading the same value
+            try {
+                return running.join();
+            }
+            catch (CompletionException e) {
+                // rethrows what the loading thread threw
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e;
+            }
+        }
+        try {
+            Object value;
+            synchronized (entries) {
+                // may have been stored since the miss above
+                Entry entry = entries.get(key);
+                value = entry == null ? null : entry.value;
+            }
+            if (value == null) {
+                value = loader.apply(key);
+                put(key, value);
+            }
+            mine.complete(value);
+            return value;
+        }
+        catch (RuntimeException | Error e) {
+            // waiting threads get the failure too, even an Error such as
+            // OutOfMemoryError, instead of waiting forever
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    // stores value under key and evicts the least recently used entries
+    // until the cache fits in maxBytes again; values larger than the whole
+    // cache are not stored
+    private void put(Key key, Object value) {
+        long size = sizeOf(value);
+        if (size > maxBytes) return;
+        synchronized (entries) {
+            // a new version of a file makes its older entries useless
+            if (key.indicator == null) {
+                Iterator<Map.Entry<Key, Entry>> it =
+                        entries.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Key, Entry> old = it.next();
+                    if (old.getKey().file.equals(key.file)
+                            && old.getKey().modified != key.modified) {
+                        bytes -= old.getValue().bytes;
+                        it.remove();
+                    }
+                }
+            }
+            Entry previous = entries.put(key, new Entry(value, size));
+            if (previous != null) bytes -= previous.bytes;
+            bytes += size;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    // returns about how many bytes of heap value takes
+    private static long sizeOf(Object value) {
+        if (value instanceof double[]) {
+            return ARRAY_BYTES + 8L * ((double[]) value).length;
+        }
+        PriceSeries series = (PriceSeries) value;
+        // seven columns of 8 byte values, counted by their full length
+        // since a view keeps the whole columns alive
+        int rows = series.dates().length;
+        long columns = OBJECT_BYTES + 7 * (ARRAY_BYTES + 8L * rows);
+        // the range index and OHLC pyramid are built on first use and then
+        // kept as long as the series, so they are counted up front
+        return columns + RangeMinMax.tableBytes(rows)
+                + OhlcPyramid.levelBytes(rows);
+    }
+
+    // returns the number of lookups that found their value cached
+    public long hits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    // returns the number of lookups that had to load their value
+    public long misses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    // returns the number of entries evicted to stay within the bound
+    public long evictions() {
+        synchronized (entries) {
+            return evictions;
+        }
+    }
+
+    // returns the bytes of all cached values
+    public long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    // returns the number of cached values
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // returns the counters as one line, e.g. for a log
+    @Override
+    public String toString() {
+        synchronized (entries) {
+            return String.format("%d entries, %d of %d bytes, %d hits, %d "
+                                         + "misses, %d evictions",
+                                 entries.size(), bytes, maxBytes, hits, misses,
+                                 evictions);
+        }
+    }
+
+    // tests methods in SeriesCache class: many threads ask a small cache
+    // for the SMAs of random files and periods, and every answer must equal
+    // computing it directly, e.g. java SeriesCache 200000 8 test/*.csv
+    public static void main(String[] args) throws Exception {
+        long maxBytes = Long.parseLong(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        List<String> files = new ArrayList<String>();
+        for (int i = 2; i < args.length; i++) {
+            // files too short for the longest period are left out
+            if (PriceSeries.load(args[i]).size() >= 50) files.add(args[i]);
+        }
+        SeriesCache cache = new SeriesCache(maxBytes);
+        int[] periods = { 5, 10, 20, 50 };
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            results.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                boolean same = true;
+                for (int i = 0; i < 2000; i++) {
+                    String file = files.get(random.nextInt(files.size()));
+                    int period = periods[random.nextInt(periods.length)];
+                    double[] cached = cache.simpMovingAvgs(file, period);
+                    if (i % 100 == 0) {
+                        same &= Arrays.equals(cached,
+                                Indicators.simpMovingAvgs(period,
+                                                          PriceSeries.load(file)));
+                    }
+                }
+                return same;
+            }));
+        }
+        boolean same = true;
+        for (Future<Boolean> result : results) same &= result.get();
+        pool.shutdown();
+        StdOut.println("cached values match: " + same);
+        StdOut.println(cache);
+    }
+}
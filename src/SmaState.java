@@ -0,0 +1,115 @@
+/*
+SmaState.java
+This class's purpose is to keep the simple moving average of a stock up to
+date one closing price at a time, so a live feed that appends a new bar
+does not have to recompute the whole history. Each update is O(1) and
+does not allocate
+ */
+public class SmaState {
+    // time period (number of closing prices) of the moving average
+    private final int period;
+    // last period closing prices, oldest one at position next once full
+    private final double[] window;
+    private int next = 0;
+    // number of closing prices currently in window
+    private int filled = 0;
+    // number of closing prices added so far
+    private long count = 0;
+    // Kahan compensated sum of the closing prices in window
+    private double periodTotal = 0.0;
+    private double compensation = 0.0;
+    // SMA before the most recent closing price was added
+    private double previous = Double.NaN;
+
+    // creates an empty state for a simple moving average of given period
+    public SmaState(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("time period must be positive");
+        }
+        this.period = period;
+        this.window = new double[period];
+    }
+
+    // adds the next closing price and updates the moving average
+    public void add(double close) {
+        previous = value();
+        // removes the closing price that leaves the window once it is full
+        double delta = filled == period ? close - window[next] : close;
+        if (filled < period) filled++;
+        window[next] = close;
+        next = (next + 1) % period;
+        count++;
+        double y = delta - compensation;
+        double t = periodTotal + y;
+        compensation = (t - periodTotal) - y;
+        periodTotal = t;
+    }
+
+    // adds values[from, from + length) as if they were added one by one;
+    // only the last period values are needed to fill the window
+    public void seed(double[] values, int from, int length) {
+        int start = Math.max(from, from + length - period);
+        // counts the skipped values so value positions stay correct
+        count += start - from;
+        for (int i = start; i < from + length; i++) add(values[i]);
+    }
+
+    // adds every closing price of an already loaded series
+    public void seed(PriceSeries series) {
+        seed(series.closes(), series.offset(), series.size());
+    }
+
+    // returns true once the window holds period closing prices
+    public boolean isReady() {
+        return filled == period;
+    }
+
+    // returns the current simple moving average, NaN until isReady()
+    public double value() {
+        return isReady() ? periodTotal / period : Double.NaN;
+    }
+
+    // returns the simple moving average before the last add, NaN if there
+    // was none
+    public double previousValue() {
+        return previous;
+    }
+
+    // returns the number of closing prices added so far
+    public long count() {
+        return count;
+    }
+
+    // returns the time period of the moving average
+    public int period() {
+        return period;
+    }
+
+    // tests methods in SmaState class by adding a file's closing prices
+    // one at a time and comparing with Indicators.simpMovingAvgs
+    public static void main(String[] args) {
+        PriceSeries series = PriceSeries.load(args[0]);
+        int period = Integer.parseInt(args[1]);
+        double[] simpMovingAvgs = Indicators.simpMovingAvgs(period, series);
+
+        SmaState state = new SmaState(period);
+        double maxError = 0.0;
+        for (int i = 0; i < series.size(); i++) {
+            state.add(series.close(i));
+            if (state.isReady()) {
+                double expected = simpMovingAvgs[i - period + 1];
+                maxError = Math.max(maxError,
+                                    Math.abs(state.value() - expected));
+            }
+        }
+        StdOut.println("Max difference from simpMovingAvgs: " + maxError);
+
+        // seeding from all but the last day then adding the last day must
+        // give the same final value
+        SmaState seeded = new SmaState(period);
+        seeded.seed(series.closes(), series.offset(), series.size() - 1);
+        seeded.add(series.close(series.size() - 1));
+        StdOut.println("Seeded SMA: " + seeded.value() + ", last SMA: "
+                               + simpMovingAvgs[simpMovingAvgs.length - 1]);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+StdDrawCanvas.java
+This class's purpose is to draw a chart to the StdDraw window: every
+ChartCanvas call is passed on to the matching StdDraw method. StdDraw
+only has one window, so StockGraph shares a single instance of this class
+ */
+// importing Color library
+
+import java.awt.Color;
+
+public class StdDrawCanvas implements ChartCanvas {
+    // width of the StdDraw window in pixels, StdDraw's default until
+    // setCanvasSize is called
+    private int width = 512;
+
+    // sets the size of the StdDraw window and remembers its width
+    public void setCanvasSize(int width, int height) {
+        this.width = width;
+        StdDraw.setCanvasSize(width, height);
+    }
+
+    // draws to an offscreen buffer from now on; nothing appears in the
+    // window until show is called, so a redraw is never seen half done
+    public void enableDoubleBuffering() {
+        StdDraw.enableDoubleBuffering();
+    }
+
+    // copies the offscreen buffer to the window
+    public void show() {
+        StdDraw.show();
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public void clear() {
+        StdDraw.clear();
+    }
+
+    public void setXscale(double min, double max) {
+        StdDraw.setXscale(min, max);
+    }
+
+    public void setYscale(double min, double max) {
+        StdDraw.setYscale(min, max);
+    }
+
+    public void setPenRadius(double radius) {
+        StdDraw.setPenRadius(radius);
+    }
+
+    public void setPenRadius() {
+        StdDraw.setPenRadius();
+    }
+
+    public void setPenColor(Color color) {
+        StdDraw.setPenColor(color);
+    }
+
+    public void line(double x0, double y0, double x1, double y1) {
+        StdDraw.line(x0, y0, x1, y1);
+    }
+
+    public void text(double x, double y, String text) {
+        StdDraw.text(x, y, text);
+    }
+
+    public void textLeft(double x, double y, String text) {
+        StdDraw.textLeft(x, y, text);
+    }
+
+    public void textRight(double x, double y, String text) {
+        StdDraw.textRight(x, y, text);
+    }
+}
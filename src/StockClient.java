@@ -3,24 +3,148 @@ StockClient.java
 This class's purpose is for the client to call the required functions
 needed to graph the desired stock data and make trend lines from that data
  */
+// importing Arrays library
+
+import java.util.Arrays;
+
 public class StockClient {
     // calls necessary methods to visualize and analyze stock
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // batch mode analyzes a whole directory of .csv files in one JVM:
+        // --batch <directory> <outDir> <periods...> [--threads N] [--scaling]
+        if (args[0].equals("--batch")) {
+            BatchAnalysis.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // server mode answers indicator and chart requests over HTTP:
+        // --serve <directory> [port]
+        if (args[0].equals("--serve")) {
+            ChartServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         // stores String name of .csv stock data file from command line
         String fileName = args[0];
-        // stores time period in days from command line for calculating
-        // moving averages of stock
-        int period = Integer.parseInt(args[1]);
+        // optional date range to show: --from yyyy-mm-dd, --to yyyy-mm-dd
+        // or --last <days>, so one long file can serve every window
+        String from = null;
+        String to = null;
+        int lastDays = 0;
+        // optional indicator layers, e.g. --layers bollinger,vwap,rsi,macd
+        String[] layers = new String[0];
+        // --follow keeps the chart up to date while rows are appended
+        boolean follow = false;
+        // optional bar size to chart a fine grained file at, e.g.
+        // --timeframe 5m, 1h, 1d or 1w
+        String timeframe = null;
+        // --profile prints the time, rows and allocations of every stage
+        // (loading, indicators, axes, drawing) as JSON once the chart is done
+        boolean profile = false;
+        String[] rest = new String[args.length - 1];
+        int count = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--from")) from = args[++i];
+            else if (args[i].equals("--to")) to = args[++i];
+            else if (args[i].equals("--last")) {
+                lastDays = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--follow")) follow = true;
+            else if (args[i].equals("--timeframe")) timeframe = args[++i];
+            else if (args[i].equals("--profile")) profile = true;
+            else if (args[i].equals("--layers")) {
+                layers = args[++i].split(",");
+            }
+            else rest[count++] = args[i];
+        }
+        // stores time periods in days from command line for calculating
+        // moving averages of stock, e.g. "10 20 50" or "10,20,50"
+        int[] periods = parsePeriods(Arrays.copyOf(rest, count), 0);
+
+        // the live chart always draws every row with its moving averages,
+        // so options that change what is drawn cannot be followed
+        if (follow) {
+            String unsupported = timeframe != null ? "--timeframe"
+                    : lastDays != 0 ? "--last"
+                    : from != null ? "--from"
+                    : to != null ? "--to"
+                    : layers.length > 0 ? "--layers"
+                    : profile ? "--profile" : null;
+            if (unsupported != null) {
+                throw new IllegalArgumentException(unsupported + " cannot be "
+                                                           + "used with --follow");
+            }
+        }
+        if (profile) Profiler.enable();
+        if (follow) {
+            // only appended bytes are parsed and only new rows are drawn
+            LiveChart.follow(fileName, periods);
+            return;
+        }
+
+        // reads the .csv file exactly once; every step below shares it
+        PriceSeries series = PriceSeries.load(fileName);
+        // narrows the series to the requested dates without copying it
+        if (lastDays > 0) series = series.lastDays(lastDays);
+        if (from != null || to != null) {
+            series = series.between(
+                    from == null ? Long.MIN_VALUE : PriceSeries.parseDate(from),
+                    to == null ? Long.MAX_VALUE : endOf(to));
+        }
+        // an empty window has nothing to scale the chart to
+        if (series.size() == 0) {
+            throw new IllegalArgumentException(
+                    fileName + " has no rows" + (lastDays > 0
+                            ? " in the last " + lastDays + " days" : "")
+                            + (from != null ? " from " + from : "")
+                            + (to != null ? " to " + to : ""));
+        }
+        // aggregates the rows into bars of the requested timeframe in one
+        // pass, so the indicators and chart below work on those bars
+        if (timeframe != null) series = Resampler.resample(series, timeframe);
 
         // sets window size for stock visualization
-        StdDraw.setCanvasSize(1200, 850);
+        StockGraph.setCanvasSize(1200, 850);
         // calls method to sets x/y scales for graphing stock data and trends
-        StockGraph.setScales(fileName);
+        // (leaving room below the chart for RSI, MACD and ATR panels)
+        StockGraph.setScales(series, StockGraph.countPanels(layers));
         // calls method to draw a candlestick chart for each date for stock
-        StockGraph.drawCandlesticks(fileName);
-        // calls method to draw a line graph (trend line) for stock's SMAs
-        StockGraph.drawSMA(period, fileName);
-        // calls method to draw a line graph (trend line) for stock's EMAs
-        StockGraph.drawEMA(period, fileName);
+        StockGraph.drawCandlesticks(series);
+        // calls method to draw a line graph (trend line) of stock's SMAs
+        // for every period
+        StockGraph.drawMovingAvgs(Indicators.Kind.SMA, periods, series);
+        // calls method to draw a line graph (trend line) of stock's EMAs
+        // for every period
+        StockGraph.drawMovingAvgs(Indicators.Kind.EMA, periods, series);
+        // calls method to draw the requested indicator layers last, since
+        // the panels change the y scale
+        StockGraph.drawLayers(layers, series);
+        if (profile) StdOut.println(Profiler.report());
+    }
+
+    // returns the last second of a --to date, so a plain yyyy-mm-dd date
+    // includes every intraday row of that day
+    private static long endOf(String date) {
+        long seconds = PriceSeries.parseDate(date);
+        if (date.length() <= 10) seconds += PriceSeries.SECONDS_PER_DAY - 1;
+        return seconds;
+    }
+
+    // reads the time periods given from args[from] onward; each argument
+    // may hold one period or several separated by commas
+    static int[] parsePeriods(String[] args, int from) {
+        int count = 0;
+        int[] periods = new int[args.length - from];
+        for (int i = from; i < args.length; i++) {
+            for (String period : args[i].split(",")) {
+                if (period.isEmpty()) continue;
+                if (count == periods.length) {
+                    periods = Arrays.copyOf(periods, 2 * count);
+                }
+                periods[count++] = Integer.parseInt(period);
+            }
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("no time periods given");
+        }
+        return Arrays.copyOf(periods, count);
     }
 }
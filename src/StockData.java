@@ -27,6 +27,12 @@ public class StockData {
         return counter;
     }
 
+    // given an already loaded series, returns number of dates in stock data
+    // without parsing the .csv file again; used in StockGraph.java
+    public static int getNumDates(PriceSeries series) {
+        return series.size();
+    }
+
     // given a file name for .csv data, prints the open, high, low, close
     // data values for each date; test method for dataset symbol table
     private static void printStockInfo(String fileName) {
@@ -4,75 +4,134 @@ This class's purpose is to graph the stock data(open, high, low, close)
 and to create line graphs for the trend lines of the stock (simple moving
 average and exponential moving average)
  */
-// importing ArrayList library
+// importing Color library
 
-import java.util.ArrayList;
+import java.awt.Color;
 
 public class StockGraph {
+    // the StdDraw window; the methods without a ChartCanvas parameter draw
+    // here, the others can draw to any canvas (such as an offscreen
+    // ImageCanvas) and never touch StdDraw's shared state
+    private static final StdDrawCanvas SCREEN = new StdDrawCanvas();
+
+    // fraction of the canvas height taken by each indicator panel below
+    // the price chart, and the largest number of panels
+    private static final double PANEL_HEIGHT = 0.18;
+    private static final int MAX_PANELS = 3;
+
+    // StdDraw's PRINCETON_ORANGE, BOOK_RED and BOOK_LIGHT_BLUE, copied so
+    // drawing to an ImageCanvas does not load StdDraw (which opens a window)
+    private static final Color PRINCETON_ORANGE = new Color(245, 128, 37);
+    private static final Color BOOK_RED = new Color(150, 35, 31);
+    private static final Color BOOK_LIGHT_BLUE = new Color(103, 198, 243);
+
+    // sets the size of the StdDraw window; series with more rows than its
+    // width are merged into about one candlestick per pixel column
+    public static void setCanvasSize(int width, int height) {
+        SCREEN.setCanvasSize(width, height);
+    }
+
     // given a file name of .csv stock data, sets the x and y scales for the
-    // graph, graphs tick marks for intervals on x and y axes
+    // graph, graphs tick marks for intervals on x and y axes; the file name
+    // methods share parsed files through SeriesCache
     public static void setScales(String fileName) {
-        ST<String, double[]> dataset = CSVReader.parseCSV(fileName);
-        double highest = Double.NEGATIVE_INFINITY;
-        // traverses through each date in dataset and updates highest value
-        // if the high value for current stock day's date is greater than
-        // previous
-        for (String date : dataset.keys()) {
-            int size = dataset.get(date).length;
-            for (int i = 0; i < size; i++) {
-                // to access the high values for stock data
-                if (i == 1) {
-                    double current = dataset.get(date)[i];
-                    if (current > highest) highest = current;
-                }
-            }
+        setScales(SeriesCache.shared().series(fileName));
+    }
+
+    // given an already loaded series, sets the scales and draws the axes
+    // in the StdDraw window
+    public static void setScales(PriceSeries series) {
+        setScales(SCREEN, series);
+    }
+
+    // sets the scales and draws the axes in the StdDraw window for the rows
+    // of series dated from fromDate to toDate (both included, seconds since
+    // 1970-01-01); the range is a view found by binary search, not a copy
+    public static void setScales(PriceSeries series, long fromDate,
+                                 long toDate) {
+        setScales(SCREEN, series.between(fromDate, toDate));
+    }
+
+    // given an already loaded series, sets the x and y scales of canvas,
+    // graphs tick marks for intervals on x and y axes; the y axis fits the
+    // series' own lowest low to highest high
+    public static void setScales(ChartCanvas canvas, PriceSeries series) {
+        setScales(canvas, series, 0);
+    }
+
+    // sets the scales and draws the axes in the StdDraw window, leaving
+    // room for the given number of indicator panels below the chart
+    public static void setScales(PriceSeries series, int panels) {
+        setScales(SCREEN, series, panels);
+    }
+
+    // sets the scales and draws the axes of canvas like setScales(canvas,
+    // series), with the bottom panels * PANEL_HEIGHT of the canvas left
+    // free for indicator panels (RSI, MACD, ATR) drawn by drawLayers
+    public static void setScales(ChartCanvas canvas, PriceSeries series,
+                                 int panels) {
+        int size = StockData.getNumDates(series);
+        // highest high and lowest low come from the series' range index
+        // (shared with the series the view was made from), so redrawing a
+        // zoomed or panned window never scans its rows again
+        setScales(canvas, series, panels, size, series.minLow(0, size),
+                  series.maxHigh(0, size));
+    }
+
+    // sets the scales and draws the axes of canvas for a chart with room
+    // for rows rows and prices from lowest to highest, which may be more
+    // than series holds yet (a followed file that keeps growing); dates
+    // are labelled for the rows series already has
+    public static void setScales(ChartCanvas canvas, PriceSeries series,
+                                 int panels, int rows, double lowest,
+                                 double highest) {
+        if (panels < 0 || panels > MAX_PANELS) {
+            throw new IllegalArgumentException("at most " + MAX_PANELS
+                                                       + " indicator panels");
         }
+        Profiler.Stage stage = Profiler.start("axes", "layout");
+        int NUM_POINTS = rows;
+        // a flat series still needs a price range to scale to
+        double priceRange = highest > lowest ? highest - lowest : 1.0;
+        // leaves a tenth of the price range below the lowest price for the
+        // dates along the x axis
+        double bottom = lowest - 0.1 * priceRange;
+        double span = highest - bottom;
 
-        // sets the y-axis scaling for stock
-        // Note: lowest price value for a stock can only be zero
-        StdDraw.setYscale(0, highest);
-        int NUM_POINTS = StockData.getNumDates(fileName);
+        // sets the y-axis scaling for stock, extended downwards so the
+        // panels fill their share of the canvas below bottom
+        double panelShare = panels * PANEL_HEIGHT;
+        canvas.setYscale(bottom - panelShare / (1 - panelShare) * span,
+                         highest);
         // sets x-axis scaling, set highest X scale to NUM_POINTS + 1
         // to easily set last candlestick/trend line in dataset
-        StdDraw.setXscale(0, NUM_POINTS + 1);
+        canvas.setXscale(0, NUM_POINTS + 1);
 
 
-        // desired pen radius for dash marks along axes
-        StdDraw.setPenRadius(0.0005);
+        // desired pen radius and color for dash marks along axes (black,
+        // whatever was drawn on the canvas before a redraw)
+        canvas.setPenRadius(0.0005);
+        canvas.setPenColor(Color.BLACK);
 
         // below code for setting up y axis tick mark intervals
         // drawing y axis
         // desired number of y axis intervals for placing tick marks
-        double INTERVAL = highest / 10;
+        double INTERVAL = priceRange / 10;
         // x coordinate for ending position of actual tick mark line on y axis
         double SCALED_YDASH = 0.02 * NUM_POINTS;
         // the position of where price of stock will be at each interval
         double PRICE_POSITION = 1.004 * SCALED_YDASH;
-        // iterates through range of y axis stock price, placing tick marks
-        // and stock prices at each interval
-        for (int i = 0; i <= highest; i += INTERVAL) {
-            if (i == 0) {
-                // creates y axis tick mark and positions price next to tick
-                // at beginning of y axis
-                StdDraw.line(0, i, SCALED_YDASH, i);
-                // y value price positioning at first tick slightly above edge
-                // of window screen
-                StdDraw.textLeft(PRICE_POSITION, 0.01 * highest,
-                                 String.valueOf(i));
-
-                // creates y axis tick mark and positions price next to tick
-                // at end of y axis
-                StdDraw.line(0, highest, SCALED_YDASH, highest);
-                // y value price positioning at last tick slightly below edge
-                // of window screen
-                StdDraw.textLeft(PRICE_POSITION, highest - 0.012 * highest,
-                                 String.valueOf((int) highest));
-            }
-            else if (highest - i >= INTERVAL) {
-                // draws intermediate tick marks and prices for intervals
-                StdDraw.line(0, i, SCALED_YDASH, i);
-                StdDraw.textLeft(PRICE_POSITION, i, String.valueOf(i));
-            }
+        // places tick marks and stock prices from the lowest to the highest
+        // price at each interval
+        for (int i = 0; i <= 10; i++) {
+            double price = lowest + i * INTERVAL;
+            canvas.line(0, price, SCALED_YDASH, price);
+            // price at first tick slightly above its tick mark and price at
+            // last tick slightly below edge of window screen
+            double y = price;
+            if (i == 0) y += 0.01 * span;
+            else if (i == 10) y -= 0.012 * span;
+            canvas.textLeft(PRICE_POSITION, y, priceLabel(price, INTERVAL));
         }
 
         // below code for setting up x axis tick mark intervals
@@ -83,25 +142,26 @@ public class StockGraph {
         // rounded time interval between x axis tick marks
         int ROUNDED_INTERVAL = (int) Math.ceil(SCALED_INTERVAL);
         // y coordinate for ending position of actual tick mark line on x axis
-        double SCALED_XDASH = 0.05 * highest;
+        double SCALED_XDASH = bottom + 0.05 * span;
         // the position of where the stock date will be at each interval
-        double DATE_POSITION = 0.05 * highest + 5;
+        double DATE_POSITION = bottom + 0.07 * span;
         // traverses through dates in dataset and draws x axis tick marks
         // and date at each interval
-        for (String date : dataset.keys()) {
+        for (int i = 0; i < series.size(); i++) {
             // updates positioning of date along x axis
             counter++;
             // drawing first date when counter is 1 to easily see the first
             // tick mark on the window screen
             if (counter == 1) {
                 // draws first x axis tick mark and date next to tick mark
-                StdDraw.line(counter, 0, counter, SCALED_XDASH);
-                StdDraw.textLeft(counter, DATE_POSITION, date);
+                canvas.line(counter, bottom, counter, SCALED_XDASH);
+                canvas.textLeft(counter, DATE_POSITION, series.dateString(i));
             }
             else if (counter == NUM_POINTS) {
                 // draws last x axis tick mark and date next to tick mark
-                StdDraw.line(NUM_POINTS, 0, NUM_POINTS, SCALED_XDASH);
-                StdDraw.textRight(NUM_POINTS, DATE_POSITION, date);
+                canvas.line(NUM_POINTS, bottom, NUM_POINTS, SCALED_XDASH);
+                canvas.textRight(NUM_POINTS, DATE_POSITION,
+                                  series.dateString(i));
             }
             else {
                 // draws intermediate tick marks at specified rounded intervals
@@ -110,74 +170,486 @@ public class StockGraph {
                 if (counter % ROUNDED_INTERVAL == 0 &&
                         NUM_POINTS - counter >=
                                 ROUNDED_INTERVAL) {
-                    StdDraw.line(counter, 0, counter, SCALED_XDASH);
-                    StdDraw.text(counter, DATE_POSITION, date);
+                    canvas.line(counter, bottom, counter, SCALED_XDASH);
+                    canvas.text(counter, DATE_POSITION, series.dateString(i));
                 }
             }
         }
         // resets pen radius
-        StdDraw.setPenRadius();
+        canvas.setPenRadius();
+        Profiler.end(stage, series.size());
+    }
+
+    // returns a y axis label for price: whole dollars when the tick marks
+    // are at least a dollar apart, cents otherwise
+    private static String priceLabel(double price, double interval) {
+        if (interval >= 1) return String.valueOf(Math.round(price));
+        return String.format("%.2f", price);
     }
 
     // given a file name for .csv stock data, draws a candlestick chart (open,
     // high, low, close) to StdDraw for each date in dataset
     public static void drawCandlesticks(String fileName) {
-        ST<String, double[]> dataset = CSVReader.parseCSV(fileName);
+        drawCandlesticks(SeriesCache.shared().series(fileName));
+    }
+
+    // given an already loaded series, draws its candlestick chart in the
+    // StdDraw window
+    public static void drawCandlesticks(PriceSeries series) {
+        drawCandlesticks(SCREEN, series);
+    }
+
+    // draws the candlesticks of the rows of series dated from fromDate to
+    // toDate (both included) in the StdDraw window
+    public static void drawCandlesticks(PriceSeries series, long fromDate,
+                                        long toDate) {
+        drawCandlesticks(SCREEN, series.between(fromDate, toDate));
+    }
+
+    // given an already loaded series, draws a candlestick chart (open,
+    // high, low, close) to canvas for each date in series
+    public static void drawCandlesticks(ChartCanvas canvas,
+                                        PriceSeries series) {
+        int size = series.size();
+        Profiler.Stage stage = Profiler.start("draw", "candlesticks");
+        // more rows than pixel columns: draws the bars of the series' OHLC
+        // pyramid level that has about one bar per pixel column, so drawing
+        // time does not grow with the file or the zoom
+        if (size > canvas.width()) {
+            Downsampler.Buckets buckets =
+                    OhlcPyramid.bars(series, 0, size, canvas.width());
+            for (int b = 0; b < buckets.count; b++) {
+                drawCandlestick(canvas, buckets.x[b], buckets.open[b],
+                                buckets.high[b], buckets.low[b],
+                                buckets.close[b]);
+            }
+            Profiler.end(stage, size);
+            return;
+        }
         int counter = 0;
-        // iterates through dates in datasets, pulling open, how, low, close
+        // iterates through dates in series, pulling open, how, low, close
         // stock prices at each date and computes candlestick chart
-        for (String date : dataset.keys()) {
+        for (int i = 0; i < size; i++) {
             counter++;
-            double open = dataset.get(date)[0];
-            double high = dataset.get(date)[1];
-            double low = dataset.get(date)[2];
-            double close = dataset.get(date)[3];
-            StdDraw.setPenColor(StdDraw.BLACK);
-            // originally draws stock price line as BLACK from low to high
-            // at date
-            StdDraw.line(counter, low, counter, high);
-            // draws portion of black line as GREEN if closing price
-            // greater than open price at that date
-            if (close > open) {
-                StdDraw.setPenColor(StdDraw.GREEN);
-                StdDraw.line(counter, open, counter, close);
-            }
-            // draws portion of black line as RED if closing price
-            // less than open price at that date
-            else {
-                StdDraw.setPenColor(StdDraw.RED);
-                StdDraw.line(counter, close, counter, open);
+            drawCandlestick(canvas, counter, series.open(i), series.high(i),
+                            series.low(i), series.close(i));
+        }
+        Profiler.end(stage, size);
+    }
+
+    // draws the candlestick of row i of series at x = i + 1, such as a row
+    // just appended to a followed file
+    public static void drawCandlestick(ChartCanvas canvas, PriceSeries series,
+                                       int i) {
+        drawCandlestick(canvas, i + 1, series.open(i), series.high(i),
+                        series.low(i), series.close(i));
+    }
+
+    // draws a single candlestick (open, high, low, close) at x
+    private static void drawCandlestick(ChartCanvas canvas, double x,
+                                        double open, double high, double low,
+                                        double close) {
+        canvas.setPenColor(Color.BLACK);
+        // originally draws stock price line as BLACK from low to high
+        // at date
+        canvas.line(x, low, x, high);
+        // draws portion of black line as GREEN if closing price
+        // greater than open price at that date
+        if (close > open) {
+            canvas.setPenColor(Color.GREEN);
+            canvas.line(x, open, x, close);
+        }
+        // draws portion of black line as RED if closing price
+        // less than open price at that date
+        else {
+            canvas.setPenColor(Color.RED);
+            canvas.line(x, close, x, open);
+        }
+    }
+
+    // draws a line graph through values[from, from + length), where value k
+    // is at x = firstX + k; lines with more points than fit in the canvas
+    // are reduced to the lowest and highest point per pixel column first
+    private static void drawLine(ChartCanvas canvas, double[] values,
+                                 int from, int length, double firstX) {
+        if (length <= 2 * canvas.width()) {
+            // connects each value to the next one
+            for (int k = 0; k < length - 1; k++) {
+                canvas.line(firstX + k, values[from + k],
+                            firstX + k + 1, values[from + k + 1]);
             }
+            return;
+        }
+        double[] xs = new double[2 * canvas.width()];
+        double[] ys = new double[2 * canvas.width()];
+        int points = Downsampler.minMax(values, from, length, firstX,
+                                        canvas.width(), xs, ys);
+        for (int k = 0; k < points - 1; k++) {
+            canvas.line(xs[k], ys[k], xs[k + 1], ys[k + 1]);
         }
     }
 
     // given a file name and specified time interval, draws a line graph
     // of all the simple moving averages computed for stock data to StdDraw
     public static void drawSMA(int period, String fileName) {
-        double[] simpleMA = Indicators.simpMovingAvgs(period, fileName);
-        int length = simpleMA.length;
+        // the SMAs are cached with the series, so redrawing an unchanged
+        // file does not compute them again
+        drawSMA(SCREEN, period,
+                SeriesCache.shared().simpMovingAvgs(fileName, period));
+    }
+
+    // given an already loaded series and specified time interval, draws
+    // its SMA line graph in the StdDraw window
+    public static void drawSMA(int period, PriceSeries series) {
+        drawSMA(SCREEN, period, series);
+    }
+
+    // given an already loaded series and specified time interval, draws a
+    // line graph of the simple moving averages to canvas
+    public static void drawSMA(ChartCanvas canvas, int period,
+                               PriceSeries series) {
+        drawSMA(canvas, period, Indicators.simpMovingAvgs(period, series));
+    }
+
+    // draws a line graph of already computed SMAs of time period (the
+    // first at the end of the first time period) to canvas
+    private static void drawSMA(ChartCanvas canvas, int period,
+                                double[] simpleMA) {
+        // times the drawing only, computing is its own indicator stage
+        Profiler.Stage stage = Profiler.start("draw", "sma", period);
         // sets simple moving avg line graph as MAGENTA color
-        StdDraw.setPenColor(StdDraw.MAGENTA);
-        // iterates through simpleMA connecting the current simpleMA value
-        // to the next one
-        for (int i = 0; i < length - 1; i++) {
-            StdDraw.line(period, simpleMA[i], period + 1, simpleMA[i + 1]);
-            period++;
-        }
+        canvas.setPenColor(Color.MAGENTA);
+        // first SMA is at the end of the first time period
+        drawLine(canvas, simpleMA, 0, simpleMA.length, period);
+        Profiler.end(stage, simpleMA.length);
     }
 
     // given a file name and specified time interval, draws a line graph
     // of all the exponential moving averages computed for stock data to StdDraw
     public static void drawEMA(int period, String fileName) {
-        ArrayList<Double> expMA = Indicators.expMovingAverage(period, fileName);
-        int length = expMA.size();
+        // the EMAs are cached with the series, so redrawing an unchanged
+        // file does not compute them again
+        drawEMA(SCREEN, period, SeriesCache.shared().movingAvgs(
+                fileName, Indicators.Kind.EMA, period));
+    }
+
+    // given an already loaded series and specified time interval, draws
+    // its EMA line graph in the StdDraw window
+    public static void drawEMA(int period, PriceSeries series) {
+        drawEMA(SCREEN, period, series);
+    }
+
+    // given an already loaded series and specified time interval, draws a
+    // line graph of the exponential moving averages to canvas
+    public static void drawEMA(ChartCanvas canvas, int period,
+                               PriceSeries series) {
+        drawEMA(canvas, period, Indicators.movingAvgs(
+                Indicators.Kind.EMA, new int[] { period }, series));
+    }
+
+    // draws a line graph of already computed EMAs of time period (one per
+    // day, NaN before the end of the first time period) to canvas
+    private static void drawEMA(ChartCanvas canvas, int period,
+                                double[] expMA) {
+        Profiler.Stage stage = Profiler.start("draw", "ema", period);
         // sets simple moving avg line graph as PRINCETON_ORANGE color
-        StdDraw.setPenColor(StdDraw.PRINCETON_ORANGE);
-        // iterates through expMA connecting the current expMA value
-        // to the next one
-        for (int i = 0; i < length - 1; i++) {
-            StdDraw.line(period, expMA.get(i), period + 1, expMA.get(i + 1));
-            period++;
+        canvas.setPenColor(PRINCETON_ORANGE);
+        // first EMA is at the end of the first time period
+        drawLine(canvas, expMA, period - 1, expMA.length - period + 1, period);
+        Profiler.end(stage, expMA.length - period + 1);
+    }
+
+    // line colors for each period drawn by drawMovingAvgs; the first
+    // period keeps the colors of drawSMA and drawEMA
+    private static final Color[] SMA_COLORS = {
+            Color.MAGENTA, Color.BLUE, Color.CYAN, BOOK_RED,
+            Color.DARK_GRAY
+    };
+    private static final Color[] EMA_COLORS = {
+            PRINCETON_ORANGE, BOOK_LIGHT_BLUE, Color.PINK,
+            Color.ORANGE, Color.GRAY
+    };
+
+    // given a kind of moving average and several time periods, draws a
+    // line graph for each of them in the StdDraw window
+    public static void drawMovingAvgs(Indicators.Kind kind, int[] periods,
+                                      PriceSeries series) {
+        drawMovingAvgs(SCREEN, kind, periods, series);
+    }
+
+    // given a kind of moving average and several time periods, computes
+    // every period in one pass over the series with Indicators.movingAvgs
+    // and draws a line graph for each of them to canvas
+    public static void drawMovingAvgs(ChartCanvas canvas,
+                                      Indicators.Kind kind, int[] periods,
+                                      PriceSeries series) {
+        int length = series.size();
+        double[] averages = Indicators.movingAvgs(kind, periods, series);
+        Color[] colors = kind == Indicators.Kind.SMA ? SMA_COLORS : EMA_COLORS;
+        Profiler.Stage stage = Profiler.start(
+                "draw", kind == Indicators.Kind.SMA ? "sma lines" : "ema lines",
+                periods);
+        for (int p = 0; p < periods.length; p++) {
+            canvas.setPenColor(colors[p % colors.length]);
+            // row p starts at p * length, first average is at day period - 1
+            int period = periods[p];
+            drawLine(canvas, averages, p * length + period - 1,
+                     length - period + 1, period);
+        }
+        Profiler.end(stage, (long) periods.length * length);
+    }
+
+    // draws Bollinger Bands (SMA of period days plus and minus width
+    // standard deviations) over the candlesticks of canvas
+    public static void drawBollingerBands(ChartCanvas canvas, int period,
+                                          double width, PriceSeries series) {
+        double[][] bands = Indicators.bollingerBands(period, width, series);
+        int length = series.size();
+        // middle band is darker than the upper and lower bands
+        canvas.setPenColor(Color.DARK_GRAY);
+        drawLine(canvas, bands[0], period - 1, length - period + 1, period);
+        canvas.setPenColor(Color.LIGHT_GRAY);
+        drawLine(canvas, bands[1], period - 1, length - period + 1, period);
+        drawLine(canvas, bands[2], period - 1, length - period + 1, period);
+    }
+
+    // draws the volume weighted average price over the candlesticks of
+    // canvas
+    public static void drawVWAP(ChartCanvas canvas, PriceSeries series) {
+        double[] vwap = Indicators.vwap(series);
+        canvas.setPenColor(BOOK_RED);
+        drawLine(canvas, vwap, 0, vwap.length, 1);
+    }
+
+    // draws the RSI of period days in panel (0 is the lowest panel) on a
+    // fixed 0 to 100 scale, with the usual 30 and 70 levels
+    public static void drawRSI(ChartCanvas canvas, int panel, int period,
+                               PriceSeries series) {
+        double[] rsi = Indicators.rsi(period, series);
+        int length = series.size();
+        setPanelScale(canvas, panel, length, 0, 100, "RSI " + period);
+        canvas.setPenColor(Color.LIGHT_GRAY);
+        canvas.line(0, 30, length + 1, 30);
+        canvas.line(0, 70, length + 1, 70);
+        canvas.setPenColor(Color.MAGENTA);
+        // first RSI is on day period, drawn at x = period + 1
+        drawLine(canvas, rsi, period, length - period, period + 1);
+    }
+
+    // draws MACD (fast EMA minus slow EMA), its signal line and histogram
+    // in panel
+    public static void drawMACD(ChartCanvas canvas, int panel, int fast,
+                                int slow, int signalPeriod,
+                                PriceSeries series) {
+        double[][] lines = Indicators.macd(fast, slow, signalPeriod, series);
+        int length = series.size();
+        int first = slow - 1;
+        int firstSignal = slow + signalPeriod - 2;
+        double lowest = Math.min(0, Math.min(lowestOf(lines[0], first, length),
+                                             lowestOf(lines[2], firstSignal,
+                                                      length)));
+        double highest = Math.max(0, Math.max(highestOf(lines[0], first, length),
+                                              highestOf(lines[2], firstSignal,
+                                                        length)));
+        setPanelScale(canvas, panel, length, lowest, highest,
+                      "MACD " + fast + " " + slow + " " + signalPeriod);
+        canvas.setPenColor(Color.LIGHT_GRAY);
+        canvas.line(0, 0, length + 1, 0);
+        canvas.setPenColor(Color.GRAY);
+        drawBars(canvas, lines[2], firstSignal, length - firstSignal,
+                 firstSignal + 1);
+        canvas.setPenColor(Color.BLUE);
+        drawLine(canvas, lines[0], first, length - first, first + 1);
+        canvas.setPenColor(PRINCETON_ORANGE);
+        drawLine(canvas, lines[1], firstSignal, length - firstSignal,
+                 firstSignal + 1);
+    }
+
+    // draws the average true range of period days in panel
+    public static void drawATR(ChartCanvas canvas, int panel, int period,
+                               PriceSeries series) {
+        double[] atr = Indicators.averageTrueRange(period, series);
+        int length = series.size();
+        setPanelScale(canvas, panel, length, 0,
+                      highestOf(atr, period - 1, length), "ATR " + period);
+        canvas.setPenColor(BOOK_LIGHT_BLUE);
+        drawLine(canvas, atr, period - 1, length - period + 1, period);
+    }
+
+    // sets the y scale of canvas so values from min to max fill panel (0
+    // is the lowest panel, each is PANEL_HEIGHT of the canvas), then draws
+    // the panel's top border and name. The price chart's y scale is gone
+    // afterwards, so panels are drawn after everything on the price chart
+    private static void setPanelScale(ChartCanvas canvas, int panel,
+                                      int length, double min, double max,
+                                      String name) {
+        if (max <= min) max = min + 1;
+        // values keep a tenth of the panel free above and below them
+        double bottom = panel * PANEL_HEIGHT + 0.1 * PANEL_HEIGHT;
+        double unitsPerCanvas = (max - min) / (0.8 * PANEL_HEIGHT);
+        double yMin = min - bottom * unitsPerCanvas;
+        canvas.setYscale(yMin, yMin + unitsPerCanvas);
+        double top = yMin + (panel + 1) * PANEL_HEIGHT * unitsPerCanvas;
+        canvas.setPenColor(Color.BLACK);
+        canvas.line(0, top, length + 1, top);
+        canvas.textLeft(0.02 * length, top - 0.06 * PANEL_HEIGHT
+                * unitsPerCanvas, name);
+    }
+
+    // draws a bar from 0 to each of values[from, from + length), where
+    // value k is at x = firstX + k; reduced to the lowest and highest value
+    // per pixel column like drawLine
+    private static void drawBars(ChartCanvas canvas, double[] values,
+                                 int from, int length, double firstX) {
+        if (length <= 2 * canvas.width()) {
+            for (int k = 0; k < length; k++) {
+                canvas.line(firstX + k, 0, firstX + k, values[from + k]);
+            }
+            return;
+        }
+        double[] xs = new double[2 * canvas.width()];
+        double[] ys = new double[2 * canvas.width()];
+        int points = Downsampler.minMax(values, from, length, firstX,
+                                        canvas.width(), xs, ys);
+        for (int k = 0; k < points; k++) {
+            canvas.line(xs[k], 0, xs[k], ys[k]);
+        }
+    }
+
+    // returns the smallest of values[from, to)
+    private static double lowestOf(double[] values, int from, int to) {
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) lowest = Math.min(lowest, values[i]);
+        return lowest;
+    }
+
+    // returns the largest of values[from, to)
+    private static double highestOf(double[] values, int from, int to) {
+        double highest = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) highest = Math.max(highest, values[i]);
+        return highest;
+    }
+
+    // returns the number of panels the named layers need below the chart
+    public static int countPanels(String[] layers) {
+        int panels = 0;
+        for (String layer : layers) {
+            if (layer.equals("rsi") || layer.equals("macd")
+                    || layer.equals("atr")) panels++;
+        }
+        return panels;
+    }
+
+    // returns the fewest rows a series needs for drawLayers to draw the
+    // named layer, the same periods drawLayers uses
+    public static int minRows(String layer) {
+        if (layer.equals("bollinger")) return 20;
+        if (layer.equals("rsi")) return 14 + 1;
+        if (layer.equals("macd")) return 26 + 9 - 1;
+        if (layer.equals("atr")) return 14;
+        if (layer.equals("vwap")) return 1;
+        throw new IllegalArgumentException("unknown indicator layer " + layer);
+    }
+
+    // draws the named indicator layers in the StdDraw window
+    public static void drawLayers(String[] layers, PriceSeries series) {
+        drawLayers(SCREEN, layers, series);
+    }
+
+    // draws the named indicator layers on a chart set up with
+    // setScales(canvas, series, countPanels(layers)): "bollinger" (20 days,
+    // 2 deviations) and "vwap" over the candlesticks, then "rsi" (14 days),
+    // "macd" (12, 26, 9) and "atr" (14 days) each in its own panel, the
+    // first one lowest. Call it after every other layer of the chart
+    public static void drawLayers(ChartCanvas canvas, String[] layers,
+                                  PriceSeries series) {
+        // overlays first, while the y scale is still the price chart's;
+        // each layer's stage includes computing its indicator
+        for (String layer : layers) {
+            Profiler.Stage stage = Profiler.start("draw", layer);
+            if (layer.equals("bollinger")) {
+                drawBollingerBands(canvas, 20, 2.0, series);
+            }
+            else if (layer.equals("vwap")) drawVWAP(canvas, series);
+            else if (!layer.equals("rsi") && !layer.equals("macd")
+                    && !layer.equals("atr")) {
+                throw new IllegalArgumentException("unknown indicator layer "
+                                                           + layer);
+            }
+            else continue;
+            Profiler.end(stage, series.size());
+        }
+        int panel = 0;
+        for (String layer : layers) {
+            Profiler.Stage stage = Profiler.start("draw", layer);
+            if (layer.equals("rsi")) drawRSI(canvas, panel++, 14, series);
+            else if (layer.equals("macd")) {
+                drawMACD(canvas, panel++, 12, 26, 9, series);
+            }
+            else if (layer.equals("atr")) {
+                drawATR(canvas, panel++, 14, series);
+            }
+            else continue;
+            Profiler.end(stage, series.size());
+        }
+    }
+
+    // extends the SMA line graph in the StdDraw window by one segment
+    public static void extendSMA(SmaState state) {
+        extendSMA(SCREEN, state);
+    }
+
+    // given a SMA state that just had a new closing price added, extends
+    // the SMA line graph by one segment instead of redrawing every SMA;
+    // the n-th closing price is drawn at x = n like drawCandlesticks
+    public static void extendSMA(ChartCanvas canvas, SmaState state) {
+        // needs an SMA before and after the newest closing price
+        if (!state.isReady() || Double.isNaN(state.previousValue())) return;
+        canvas.setPenColor(Color.MAGENTA);
+        long x = state.count();
+        canvas.line(x - 1, state.previousValue(), x, state.value());
+    }
+
+    // extends the SMA line graph of every state by one segment, in the
+    // colors drawMovingAvgs gives the same periods
+    public static void extendSMAs(ChartCanvas canvas, SmaState[] states) {
+        for (int p = 0; p < states.length; p++) {
+            SmaState state = states[p];
+            if (!state.isReady() || Double.isNaN(state.previousValue())) {
+                continue;
+            }
+            canvas.setPenColor(SMA_COLORS[p % SMA_COLORS.length]);
+            long x = state.count();
+            canvas.line(x - 1, state.previousValue(), x, state.value());
+        }
+    }
+
+    // extends the EMA line graph in the StdDraw window by one segment
+    public static void extendEMA(EmaState state) {
+        extendEMA(SCREEN, state);
+    }
+
+    // given an EMA state that just had a new closing price added, extends
+    // the EMA line graph by one segment instead of redrawing every EMA
+    public static void extendEMA(ChartCanvas canvas, EmaState state) {
+        // needs an EMA before and after the newest closing price
+        if (!state.isReady() || Double.isNaN(state.previousValue())) return;
+        canvas.setPenColor(PRINCETON_ORANGE);
+        long x = state.count();
+        canvas.line(x - 1, state.previousValue(), x, state.value());
+    }
+
+    // extends the EMA line graph of every state by one segment, in the
+    // colors drawMovingAvgs gives the same periods
+    public static void extendEMAs(ChartCanvas canvas, EmaState[] states) {
+        for (int p = 0; p < states.length; p++) {
+            EmaState state = states[p];
+            if (!state.isReady() || Double.isNaN(state.previousValue())) {
+                continue;
+            }
+            canvas.setPenColor(EMA_COLORS[p % EMA_COLORS.length]);
+            long x = state.count();
+            canvas.line(x - 1, state.previousValue(), x, state.value());
         }
     }
 
@@ -189,17 +661,20 @@ public class StockGraph {
         // moving averages of stock
         int period = Integer.parseInt(args[1]);
 
+        // parses the .csv file once and shares it with every draw method
+        PriceSeries series = PriceSeries.load(fileName);
+
         // sets size of StdDraw window
-        StdDraw.setCanvasSize(1500, 850);
+        StockGraph.setCanvasSize(1500, 850);
 
-        // tests setScales method with given fileName
-        StockGraph.setScales(fileName);
-        // tests drawCandlesticks method with given fileName
-        StockGraph.drawCandlesticks(fileName);
+        // tests setScales method with given series
+        StockGraph.setScales(series);
+        // tests drawCandlesticks method with given series
+        StockGraph.drawCandlesticks(series);
 
-        // tests drawSMA and drawEMA method with given fileName and specified
+        // tests drawSMA and drawEMA method with given series and specified
         // time period for computing each moving average as 3 days
-        StockGraph.drawSMA(period, fileName);
-        StockGraph.drawEMA(period, fileName);
+        StockGraph.drawSMA(period, series);
+        StockGraph.drawEMA(period, series);
     }
 }
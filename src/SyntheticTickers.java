@@ -0,0 +1,86 @@
+/*
+SyntheticTickers.java
+This class's purpose is to write a universe of made up tickers as Yahoo
+Finance style .csv files (one row per day, random walk prices), so code
+meant for thousands of tickers can be tried without downloading them.
+The same seed always writes the same files
+ */
+// importing file and random libraries
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Random;
+
+public class SyntheticTickers {
+    // returns the name of ticker number t, e.g. SYN00042
+    public static String name(int t) {
+        return String.format("SYN%05d", t);
+    }
+
+    // writes tickers files of rows days each into directory (created if
+    // missing), starting on 2000-01-03; returns the files
+    public static File[] write(File directory, int tickers, int rows,
+                               long seed) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        Random random = new Random(seed);
+        File[] files = new File[tickers];
+        StringBuilder line = new StringBuilder(96);
+        for (int t = 0; t < tickers; t++) {
+            files[t] = new File(directory, name(t) + ".csv");
+            // every ticker follows the market a little, plus its own moves
+            double beta = 0.5 + random.nextDouble();
+            double price = 10 + 190 * random.nextDouble();
+            Random market = new Random(seed + 1);
+            LocalDate date = LocalDate.of(2000, 1, 3);
+            try (BufferedWriter out = new BufferedWriter(
+                    new FileWriter(files[t]), 1 << 16)) {
+                out.write("Date,Open,High,Low,Close,Adj Close,Volume\n");
+                for (int i = 0; i < rows; i++) {
+                    double open = price;
+                    double change = beta * 0.01 * market.nextGaussian()
+                            + 0.015 * random.nextGaussian();
+                    price = Math.max(0.01, price * (1 + change));
+                    double high = Math.max(open, price)
+                            * (1 + 0.005 * random.nextDouble());
+                    double low = Math.min(open, price)
+                            * (1 - 0.005 * random.nextDouble());
+                    line.setLength(0);
+                    line.append(date).append(',')
+                        .append(round(open)).append(',')
+                        .append(round(high)).append(',')
+                        .append(round(low)).append(',')
+                        .append(round(price)).append(',')
+                        .append(round(price)).append(',')
+                        .append(100_000 + random.nextInt(10_000_000))
+                        .append('\n');
+                    out.write(line.toString());
+                    date = date.plusDays(1);
+                }
+            }
+        }
+        return files;
+    }
+
+    // rounds a price to cents, like the prices of a real .csv file
+    private static double round(double price) {
+        return Math.round(price * 100) / 100.0;
+    }
+
+    // writes a universe, e.g. java SyntheticTickers universe 5000 1000
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args[0]);
+        int tickers = Integer.parseInt(args[1]);
+        int rows = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        long start = System.nanoTime();
+        write(directory, tickers, rows, seed);
+        StdOut.printf("wrote %d tickers of %d rows to %s in %.1f s%n",
+                      tickers, rows, directory,
+                      (System.nanoTime() - start) / 1e9);
+    }
+}